@@ -0,0 +1,99 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The number of requests a host is sent at the same time, and how far apart, tuned to what the host can take by
+ * additive increase, multiplicative decrease (AIMD), the way TCP tunes its congestion window.
+ * <p>
+ * The limit starts at one request, and grows by one with each request that completes in good time, doubling
+ * with each round of requests, until the host is first seen to struggle. From then on it grows by one request
+ * per round. A request that times out, or is answered with a 429 or 5xx status, halves the limit and doubles the
+ * pace, the time kept in between requests, which then shrinks again by {@link #PACE_STEP} with each request that
+ * completes in good time. Requests sent before the last decrease are not taken to tell anything more, so a round
+ * of requests failing together counts once.
+ * <p>
+ * A request completes in good time if it takes no longer than twice the baseline latency, the shortest seen,
+ * which drifts up slowly so a host that gets slower for good is not held back for good. Requests that take
+ * longer hold the limit where it is.
+ * <p>
+ * Times are in nanoseconds as given by {@link System#nanoTime()}. Not thread safe, {@link HostScheduler} guards
+ * access to it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class AdaptiveLimit {
+
+    static final long MIN_PACE = TimeUnit.MILLISECONDS.toNanos(100);
+    static final long MAX_PACE = TimeUnit.SECONDS.toNanos(30);
+    static final long PACE_STEP = TimeUnit.MILLISECONDS.toNanos(10);
+    // latency below this is taken to be in good time, whatever the baseline, as it is mostly noise
+    private static final long LATENCY_FLOOR = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final int max;
+    private double limit = 1;
+    private boolean slowStart = true;
+    private long pace = 0;
+    private double baseline = -1;
+    private boolean decreased = false;
+    private long lastDecrease;
+
+    /**
+     * @param max the most requests the host can be sent at the same time
+     */
+    AdaptiveLimit(int max) {
+        this.max = Math.max(1, max);
+    }
+
+    /**
+     * Records a request that completed without the host struggling
+     *
+     * @param latency how long the request took
+     */
+    void succeeded(long latency) {
+        boolean inGoodTime = baseline < 0 || latency <= Math.max(2 * baseline, LATENCY_FLOOR);
+        if (baseline < 0 || latency < baseline) {
+            baseline = latency;
+        } else {
+            baseline += (latency - baseline) * BASELINE_DRIFT;
+        }
+        if (!inGoodTime) {
+            return;
+        }
+        limit = Math.min(max, limit + (slowStart ? 1 : 1 / limit));
+        pace = Math.max(0, pace - PACE_STEP);
+    }
+
+    /**
+     * Records a request that timed out, or was refused by a host struggling to keep up
+     *
+     * @param started when the request was sent
+     * @param now     the current time
+     */
+    void congested(long started, long now) {
+        if (decreased && started - lastDecrease < 0) {
+            // sent before the last decrease, so at the rate already backed off from
+            return;
+        }
+        decreased = true;
+        lastDecrease = now;
+        slowStart = false;
+        limit = Math.max(1, limit / 2);
+        pace = Math.min(MAX_PACE, Math.max(MIN_PACE, pace * 2));
+    }
+
+    /**
+     * @return the number of requests the host can be sent at the same time
+     */
+    int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the time to keep in between requests to the host, in nanoseconds
+     */
+    long pace() {
+        return pace;
+    }
+}
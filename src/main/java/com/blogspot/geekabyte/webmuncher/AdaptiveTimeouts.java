@@ -0,0 +1,101 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives the connect and read time outs of requests to each host, from the latencies seen so far: the 99th
+ * percentile times {@link #FACTOR}, within the bounds configured. A host is given the longest time out until
+ * {@link #MIN_SAMPLES} of its requests have been timed.
+ * <p>
+ * The connect latency is the time taken to open a connection, next to nothing for one kept alive, and the read
+ * latency the time from then to the response headers. A request that times out is counted as taking as long as
+ * its time out, so a host that is slow but keeps answering gets longer time outs. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class AdaptiveTimeouts {
+
+    static final int MIN_SAMPLES = 20;
+    static final int FACTOR = 4;
+    private static final double QUANTILE = 0.99;
+    private static final int WINDOW = 1000;
+
+    private final int minTimeout;
+    private final int maxTimeout;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param minTimeout the shortest time out given, in milliseconds
+     * @param maxTimeout the longest time out given, in milliseconds
+     */
+    AdaptiveTimeouts(int minTimeout, int maxTimeout) {
+        this.minTimeout = Math.min(minTimeout, maxTimeout);
+        this.maxTimeout = maxTimeout;
+    }
+
+    /**
+     * @param host a host
+     * @return the time out to open a connection to the host with, in milliseconds
+     */
+    int connectTimeout(String host) {
+        return timeoutOf(host(host).connect);
+    }
+
+    /**
+     * @param host a host
+     * @return the time out to read from a connection to the host with, in milliseconds
+     */
+    int readTimeout(String host) {
+        return timeoutOf(host(host).read);
+    }
+
+    /**
+     * @param host   a host
+     * @param millis the time taken to open a connection to it
+     */
+    void connected(String host, long millis) {
+        host(host).connect.record(millis);
+    }
+
+    /**
+     * @param host   a host
+     * @param millis the time taken for it to send the response headers, once connected
+     */
+    void responded(String host, long millis) {
+        host(host).read.record(millis);
+    }
+
+    /**
+     * @param host    a host
+     * @param timeout the time out of the connection to it that timed out
+     */
+    void connectTimedOut(String host, int timeout) {
+        host(host).connect.record(timeout);
+    }
+
+    /**
+     * @param host    a host
+     * @param timeout the time out of the read from it that timed out
+     */
+    void readTimedOut(String host, int timeout) {
+        host(host).read.record(timeout);
+    }
+
+    private int timeoutOf(LatencyHistogram latencies) {
+        if (latencies.count() < MIN_SAMPLES) {
+            return maxTimeout;
+        }
+        long timeout = latencies.percentile(QUANTILE) * FACTOR;
+        return (int) Math.max(minTimeout, Math.min(maxTimeout, timeout));
+    }
+
+    private Host host(String name) {
+        return hosts.computeIfAbsent(name, key -> new Host());
+    }
+
+    private static class Host {
+        private final LatencyHistogram connect = new LatencyHistogram(WINDOW);
+        private final LatencyHistogram read = new LatencyHistogram(WINDOW);
+    }
+}
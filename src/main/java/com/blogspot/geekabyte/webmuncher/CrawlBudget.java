@@ -0,0 +1,103 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of what a crawl has used up of its budget: the number of pages requested, in total and per host,
+ * the number of bytes fetched, and the time taken. A limit of -1 means there is no limit.
+ * <p>
+ * Times are in nanoseconds as given by {@link System#nanoTime()}. Not thread safe, {@link CrawlJob} guards
+ * access to it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class CrawlBudget {
+
+    private final long maxPages;
+    private final long maxBytes;
+    private final int maxPagesPerHost;
+    private final long deadline;
+    private final Map<String, Integer> pagesPerHost = new HashMap<>();
+    private long pages = 0;
+    private long bytes = 0;
+
+    /**
+     * @param maxPages        the number of pages that can be requested
+     * @param maxBytes        the number of bytes that can be fetched
+     * @param maxPagesPerHost the number of pages that can be requested from each host
+     * @param deadline        the time the crawl should stop by, or {@link Long#MAX_VALUE} if there is none
+     */
+    CrawlBudget(long maxPages, long maxBytes, int maxPagesPerHost, long deadline) {
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.maxPagesPerHost = maxPagesPerHost;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Records a request for the given url
+     *
+     * @param url the url requested
+     */
+    void requested(String url) {
+        pages++;
+        if (maxPagesPerHost >= 0) {
+            pagesPerHost.merge(HostScheduler.hostOf(url), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Records bytes fetched
+     *
+     * @param count the number of bytes fetched
+     */
+    void fetched(long count) {
+        bytes += count;
+    }
+
+    /**
+     * @param url a url
+     * @return true if no more pages can be requested from the host of the url
+     */
+    boolean isHostSpent(String url) {
+        return maxPagesPerHost >= 0
+                && pagesPerHost.getOrDefault(HostScheduler.hostOf(url), 0) >= maxPagesPerHost;
+    }
+
+    /**
+     * @param now the current time
+     * @return what of the budget has been spent, or null if the crawl can carry on
+     */
+    String spent(long now) {
+        if (maxPages >= 0 && pages >= maxPages) {
+            return maxPages + " pages requested";
+        }
+        if (maxBytes >= 0 && bytes >= maxBytes) {
+            return bytes + " bytes fetched";
+        }
+        if (deadline != Long.MAX_VALUE && now - deadline >= 0) {
+            return "time is up";
+        }
+        return null;
+    }
+
+    /**
+     * @param now the current time
+     * @return nanoseconds until the deadline, or -1 if there is no deadline
+     */
+    long nanosUntilDeadline(long now) {
+        if (deadline == Long.MAX_VALUE) {
+            return -1;
+        }
+        return Math.max(0, deadline - now);
+    }
+
+    long pages() {
+        return pages;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+}
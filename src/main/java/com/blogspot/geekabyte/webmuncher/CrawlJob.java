@@ -0,0 +1,1052 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.exceptions.PageTooLargeException;
+import com.blogspot.geekabyte.webmuncher.interfaces.ErrorAction;
+import com.blogspot.geekabyte.webmuncher.interfaces.FetchAction;
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.interfaces.UrlScorer;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single crawl operation started by {@link Webmuncher}.
+ * <p>
+ * Discovered URLs are queued in a {@link Frontier} and handed out, by a single dispatching thread, to a pool of
+ * workers, as soon as the {@link HostScheduler} allows their host to be requested. The number of workers, and thus
+ * the number of pages fetched at the same time, is configured via {@link Webmuncher#setConcurrency(int)}. With
+ * {@link Webmuncher#setVirtualThreads(boolean)} each fetch gets its own virtual thread instead, and the concurrency
+ * only caps the number of fetches in flight.
+ * <p>
+ * With a checkpoint set via {@link Webmuncher#setCheckpoint(Path)}, the progress of the crawl is journaled by a
+ * {@link CrawlJournal}, from which the crawl can be resumed if it gets interrupted.
+ * <p>
+ * The crawl stops handing out urls once its {@link CrawlBudget} is spent, and returns once the pages being
+ * fetched are done.
+ * <p>
+ * With a recrawl cache set via {@link Webmuncher#setRecrawlCache(Path)}, pages are fetched conditionally, and
+ * those that have not changed since the last crawl are not parsed: the links the {@link RecrawlCache} holds
+ * for them are followed instead.
+ * <p>
+ * With {@link Webmuncher#setRespectRobotsTxt(boolean)}, the urls found are checked against the robots.txt of
+ * their site, kept by a {@link RobotsCache}, and its crawl delay is waited in between requests.
+ * <p>
+ * With {@link Webmuncher#setSitemapSeeding(boolean)}, the urls listed in the sitemaps of the site are queued by
+ * a {@link SitemapSeeder}, on a thread of its own, while the crawl carries on.
+ * <p>
+ * With {@link Webmuncher#setAdaptiveHostConcurrency(boolean)}, the number of requests in flight to each host, and
+ * their pace, adapt to how the host copes, as the {@link HostScheduler} is told how each request went.
+ * <p>
+ * With {@link Webmuncher#setStreamingLinkExtraction(boolean)}, the links of a page are found by the
+ * {@link LinkScanner}, and the page is only parsed if the {@link FetchAction} asks for its content.
+ * <p>
+ * Each page goes through three stages: it is fetched on a worker, then analysed, that is parsed and its links
+ * queued, then handed to the {@link FetchAction}. With {@link Webmuncher#setParseThreads(int)} and
+ * {@link Webmuncher#setSinkThreads(int)}, the last two run on pools of their own, each page waiting for the next
+ * stage in a bounded queue, so a worker is free to fetch again as soon as its page is handed on, and a stage that
+ * falls behind holds up the one before it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class CrawlJob {
+
+    private static final int MAX_PARKED_PER_HOST = 16;
+    // how far down the frontier to look for a url whose host can be requested
+    private static final int MAX_SCAN = 32;
+    // how long a url due to be retried waits when its host can not take it yet
+    private static final long RETRY_PAUSE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Logger logger = LoggerFactory.getLogger(CrawlJob.class);
+
+    private final Webmuncher webmuncher;
+    private final FetchAction action;
+    private final ErrorAction errorAction;
+    private final int concurrency;
+    private final int maxDepth;
+    private final Set<String> excludeURLs;
+    private final Set<String> crawledURLs = ConcurrentHashMap.newKeySet();
+    private final boolean collectCrawledUrls;
+    private final boolean processUnchangedPages;
+    private final AtomicLong unchangedPages = new AtomicLong();
+    private final AtomicLong skippedUrls = new AtomicLong();
+    private final ExecutorService workers;
+    // the pools pages are analysed on and handed to the action on, or null for them to stay on the thread before
+    private final ExecutorService parsers;
+    private final ExecutorService sinks;
+    // reads the sitemaps, if they are
+    private ExecutorService seeding;
+    // bound the number of pages waiting for, or in, each of those stages
+    private final Semaphore parseSlots;
+    private final Semaphore sinkSlots;
+    private final HttpFetcher fetcher;
+    private final DnsCache dns;
+    private final RobotsCache robots;
+    private final boolean preResolveHosts;
+    private final boolean sitemapSeeding;
+    private final boolean streamingLinkExtraction;
+
+    // guards the frontier, the number of pages in flight and the failure
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Frontier frontier;
+    private final HostScheduler scheduler;
+    private final RetryQueue retries;
+    private final CrawlBudget budget;
+    private int running = 0;
+    // the pages in flight still on a worker, which are capped by the concurrency
+    private int fetching = 0;
+    // set once no more urls are handed out, so those still being read from sitemaps are let go
+    private volatile boolean stopped = false;
+    // urls taken off the frontier that their host could not take, nor park, kept in the order they were found to
+    // go before the rest of the frontier
+    private final Deque<Url> held = new ArrayDeque<>();
+    // set once the frontier is closed, after which the stages still in flight, when the crawl is interrupted,
+    // must not touch it
+    private boolean closed = false;
+    private Throwable failure;
+    private CrawlJournal journal;
+    private RecrawlCache cache;
+
+    CrawlJob(Webmuncher webmuncher, Set<String> excludeURLs) {
+        this.webmuncher = webmuncher;
+        this.action = webmuncher.getFetchAction();
+        this.errorAction = webmuncher.getErrorAction();
+        this.concurrency = webmuncher.getConcurrency();
+        this.maxDepth = webmuncher.getMaxDepth();
+        this.excludeURLs = excludeURLs == null ? Collections.emptySet() : excludeURLs;
+        this.collectCrawledUrls = webmuncher.isCollectCrawledUrls();
+        this.processUnchangedPages = webmuncher.isProcessUnchangedPages();
+        this.frontier = newFrontier(webmuncher);
+        this.workers = newWorkers(webmuncher);
+        this.parsers = webmuncher.getParseThreads() > 0 ? new ForkJoinPool(webmuncher.getParseThreads()) : null;
+        this.sinks = webmuncher.getSinkThreads() > 0 ? Executors.newFixedThreadPool(webmuncher.getSinkThreads()) : null;
+        this.parseSlots = new Semaphore(2 * webmuncher.getParseThreads());
+        this.sinkSlots = new Semaphore(2 * webmuncher.getSinkThreads());
+        this.dns = webmuncher.newDnsCache();
+        this.preResolveHosts = webmuncher.isPreResolveHosts();
+        this.fetcher = webmuncher.newFetcher(dns);
+        this.robots = webmuncher.isRespectRobotsTxt()
+                ? new RobotsCache(fetcher, webmuncher.getRobotsUserAgent(), webmuncher.getRobotsTxtTtl().toNanos())
+                : null;
+        this.sitemapSeeding = webmuncher.isSitemapSeeding();
+        this.streamingLinkExtraction = webmuncher.isStreamingLinkExtraction();
+        this.scheduler = newScheduler(webmuncher);
+        this.budget = newBudget(webmuncher);
+        this.retries = new RetryQueue(
+                webmuncher.getMaxRetry(), TimeUnit.MILLISECONDS.toNanos(webmuncher.getRetryBackOff()));
+    }
+
+    private Frontier newFrontier(Webmuncher webmuncher) {
+        UrlScorer scorer = webmuncher.getOrderingScorer();
+        if (scorer != null) {
+            if (webmuncher.getFrontierDirectory() != null) {
+                logger.warn("Urls are crawled in {} order, so are queued in memory rather than on disk",
+                        webmuncher.getCrawlOrder());
+            }
+            return new Frontier(new PriorityUrlQueue(scorer), webmuncher.newSeenUrlStore());
+        }
+        if (webmuncher.getFrontierDirectory() != null) {
+            return new Frontier(new DiskUrlQueue(webmuncher.getFrontierDirectory(), webmuncher.getMaxUrlsInMemory()),
+                    webmuncher.newSeenUrlStore());
+        }
+        return new Frontier(new InMemoryUrlQueue(), webmuncher.newSeenUrlStore());
+    }
+
+    private HostScheduler newScheduler(Webmuncher webmuncher) {
+        if (!webmuncher.isAdaptiveHostConcurrency()) {
+            return new HostScheduler(this::delayOf, MAX_PARKED_PER_HOST);
+        }
+        int maxPerHost = webmuncher.getMaxConnectionsPerHost() > 0
+                ? Math.min(webmuncher.getMaxConnectionsPerHost(), concurrency) : concurrency;
+        return new HostScheduler(this::delayOf, MAX_PARKED_PER_HOST, maxPerHost);
+    }
+
+    /**
+     * The delay in between requests to the given host: the one configured, or the crawl delay asked for by the
+     * host's robots.txt if longer
+     */
+    private long delayOf(String host) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(webmuncher.nextDelay());
+        return robots == null ? delay : Math.max(delay, robots.crawlDelay(host));
+    }
+
+    private CrawlBudget newBudget(Webmuncher webmuncher) {
+        long deadline = Long.MAX_VALUE;
+        if (webmuncher.getMaxDuration() != null) {
+            deadline = System.nanoTime() + webmuncher.getMaxDuration().toNanos();
+        }
+        return new CrawlBudget(webmuncher.getMaxPages(), webmuncher.getMaxBytes(), webmuncher.getMaxPagesPerHost(),
+                deadline);
+    }
+
+    private ExecutorService newWorkers(Webmuncher webmuncher) {
+        if (webmuncher.isVirtualThreads()) {
+            // looked up reflectively so the library still builds and runs on Java 8
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads are not available on Java {}. Falling back to {} platform threads",
+                        System.getProperty("java.version"), webmuncher.getConcurrency());
+            }
+        }
+        return Executors.newFixedThreadPool(webmuncher.getConcurrency());
+    }
+
+    /**
+     * Crawls all pages reachable from the given url. The method is blocking and only returns
+     * when all url has been fetched.
+     *
+     * @param url the URL to start crawling from
+     * @return A set containing all the URL crawled
+     * @throws IOException          if the page at the given url could not be fetched, or the checkpoint or the
+     *                              recrawl cache could not be created
+     * @throws InterruptedException if interrupted while waiting for the crawl to finish
+     */
+    Set<String> run(String url) throws IOException, InterruptedException {
+        // as the links back to it are found
+        url = canonical(url);
+        try {
+            if (webmuncher.getCheckpoint() != null) {
+                journal = CrawlJournal.create(webmuncher.getCheckpoint(), url);
+            }
+            loadCache();
+            // urls excluded up front are marked as seen, so they never get queued
+            excludeURLs.forEach(excluded -> frontier.markSeen(canonical(excluded)));
+            frontier.markSeen(url);
+            if (robots != null && !robots.isAllowed(url)) {
+                logger.warn("{} is disallowed by robots.txt, but is crawled as the crawl starts from it", url);
+            }
+            Url seed = new Url(url, "");
+            if (journal != null) {
+                journal.queued(seed);
+            }
+            long started = System.nanoTime();
+            scheduler.reserve(url, started);
+            budget.requested(url);
+            FetchResponse response = fetcher.fetch(url, validators(url));
+            lock.lock();
+            try {
+                scheduler.release(url, started, false, System.nanoTime());
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sink(seed, analyse(seed, response));
+            } catch (CompletionException e) {
+                // the page could not be parsed
+                throw (IOException) e.getCause();
+            }
+            if (sitemapSeeding && maxDepth != 0) {
+                seedFromSitemaps(seed);
+            }
+            drain();
+        } finally {
+            close();
+        }
+        return finish();
+    }
+
+    /**
+     * @return the canonical form of the given url, or the url itself if it has none
+     */
+    private String canonical(String url) {
+        String canonical = webmuncher.canonicalize(url);
+        return canonical != null ? canonical : url;
+    }
+
+    /**
+     * Carries on with the crawl journaled in the given checkpoint: the urls seen are marked as seen again, and
+     * those not yet crawled are queued. The method is blocking and only returns when all url has been fetched.
+     *
+     * @param checkpoint the checkpoint of the crawl, which is appended to as the crawl carries on
+     * @return A set containing all the URL crawled, including those crawled before the checkpoint was taken
+     * @throws IOException          if the checkpoint or the recrawl cache could not be read
+     * @throws InterruptedException if interrupted while waiting for the crawl to finish
+     */
+    Set<String> resume(Path checkpoint) throws IOException, InterruptedException {
+        try {
+            // first pass for the urls done with, so the second pass only queues those still to be crawled
+            SeenUrlStore done = webmuncher.newSeenUrlStore();
+            long length = CrawlJournal.replay(checkpoint, url -> {}, url -> {
+                done.add(url);
+                crawled(url);
+            });
+            excludeURLs.forEach(excluded -> frontier.markSeen(canonical(excluded)));
+            CrawlJournal.replay(checkpoint, url -> {
+                if (frontier.accepts(url) && frontier.markSeen(url.getUrl()) && !done.contains(url.getUrl())) {
+                    frontier.add(url);
+                }
+            }, url -> {});
+            journal = CrawlJournal.append(checkpoint, length);
+            loadCache();
+            drain();
+        } finally {
+            close();
+        }
+        return finish();
+    }
+
+    /**
+     * Queues the urls listed in the sitemaps of the site as they are read, on a thread of its own so no worker is
+     * held up, as if they were linked from the seed. Those listed as last modified before they were last fetched
+     * are not fetched again. The sitemaps are left unread once the crawl stops.
+     */
+    private void seedFromSitemaps(Url seed) {
+        RobotsCache sitemaps = robots != null ? robots
+                : new RobotsCache(fetcher, webmuncher.getRobotsUserAgent(), webmuncher.getRobotsTxtTtl().toNanos());
+        SitemapSeeder seeder = new SitemapSeeder(fetcher, sitemaps, this::isInScope,
+                () -> stopped || Thread.currentThread().isInterrupted());
+        seeding = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webmuncher-sitemaps");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lock.lock();
+        try {
+            // counted as running, so the crawl does not end while the sitemaps are still being read
+            running++;
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                seeder.seed(seed.getUrl(), (sitemap, loc, lastmod) -> {
+                    if (isInScope(loc)) {
+                        seed(new Url(webmuncher.canonicalize(loc), sitemap, seed.getDepth() + 1), lastmod);
+                    }
+                });
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, seeding).whenComplete((ignored, e) -> seeded(e));
+    }
+
+    private boolean isInScope(String url) {
+        String canonical = webmuncher.canonicalize(url);
+        return canonical != null && webmuncher.isInternal(canonical);
+    }
+
+    private void seed(Url url, Instant lastmod) {
+        if (stopped) {
+            return;
+        }
+        RecrawlCache.Entry cached = validators(url.getUrl());
+        if (lastmod == null || cached == null || lastmod.toEpochMilli() > cached.getFetchedAt()) {
+            enqueue(url);
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed || !frontier.markSeen(url.getUrl())) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (webmuncher.include(url.getUrl()) && (robots == null || robots.isAllowed(url.getUrl()))) {
+            // not changed since it was last fetched, as the sitemap has it
+            sink(url, unchangedPage(url, 0));
+            follow(url, cached.getLinks());
+        }
+    }
+
+    private void seeded(Throwable e) {
+        try {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                logger.warn("Failed to read the sitemaps. With error message: {}", cause.getMessage());
+            } else if (cause != null) {
+                fail(cause);
+            }
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests each host can currently be sent at the same time, if they adapt
+     */
+    Map<String, Integer> hostLimits() {
+        lock.lock();
+        try {
+            return scheduler.limits();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loadCache() throws IOException {
+        if (webmuncher.getRecrawlCache() != null) {
+            cache = RecrawlCache.load(webmuncher.getRecrawlCache());
+        }
+    }
+
+    private RecrawlCache.Entry validators(String url) {
+        return cache == null ? null : cache.get(url);
+    }
+
+    private void drain() throws InterruptedException {
+        try {
+            dispatch();
+        } finally {
+            stopped = true;
+        }
+        // let the pages in flight finish, through all their stages
+        lock.lock();
+        try {
+            while (running > 0) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private void close() throws IOException {
+        workers.shutdownNow();
+        if (parsers != null) {
+            parsers.shutdownNow();
+        }
+        if (sinks != null) {
+            sinks.shutdownNow();
+        }
+        if (seeding != null) {
+            seeding.shutdownNow();
+        }
+        dns.close();
+        lock.lock();
+        try {
+            // the stages are not waited for, so those still in flight check this under the lock
+            closed = true;
+            frontier.close();
+        } finally {
+            lock.unlock();
+        }
+        logStats();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } finally {
+            if (cache != null) {
+                logger.info("{} pages had not changed since the last crawl", unchangedPages.get());
+                cache.save();
+            }
+        }
+    }
+
+    private void logStats() {
+        long pages;
+        long bytes;
+        lock.lock();
+        try {
+            pages = budget.pages();
+            bytes = budget.bytes();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Requested {} pages, fetched {} bytes. Skipped {} urls by their extension, "
+                        + "saved {} bytes of content that is not a page",
+                pages, bytes, skippedUrls.get(), fetcher.bytesSaved());
+    }
+
+    private Set<String> finish() {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return crawledURLs;
+    }
+
+    private void dispatch() throws InterruptedException {
+        while (true) {
+            Url next;
+            lock.lock();
+            try {
+                while (true) {
+                    if (failure != null) {
+                        // something went terribly wrong
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    String spent = budget.spent(now);
+                    if (spent != null) {
+                        // the pages being fetched are let to finish, those still queued are left
+                        logger.info("Stopping the crawl, its budget is spent: {}", spent);
+                        return;
+                    }
+                    if (fetching < concurrency) {
+                        next = next(now);
+                        if (next != null) {
+                            break;
+                        }
+                        if (running == 0 && frontier.isEmpty() && held.isEmpty() && scheduler.parked() == 0
+                                && retries.isEmpty()) {
+                            // nothing is queued and nothing is being fetched that could queue more
+                            return;
+                        }
+                    }
+                    // the frontier is looked down again once a host can take another url
+                    long untilReady = earliest(scheduler.nanosUntilReady(now), retries.nanosUntilDue(now));
+                    if (fetching >= concurrency) {
+                        untilReady = -1;
+                    }
+                    untilReady = earliest(untilReady, budget.nanosUntilDeadline(now));
+                    if (untilReady < 0) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(untilReady);
+                    }
+                }
+                running++;
+                fetching++;
+                budget.requested(next.getUrl());
+            } finally {
+                lock.unlock();
+            }
+            crawl(next);
+        }
+    }
+
+    private static long earliest(long nanos, long otherNanos) {
+        if (nanos < 0 || otherNanos < 0) {
+            return Math.max(nanos, otherNanos);
+        }
+        return Math.min(nanos, otherNanos);
+    }
+
+    /**
+     * Gets the next url whose host can be requested now. Urls whose host can't be requested yet are
+     * parked with the scheduler, so that urls for other hosts further down the frontier can go first.
+     * Urls due to be retried go before those in the frontier.
+     * <p>
+     * Urls whose host has no room left to park them are held, in the order they were found, ahead of the rest of
+     * the frontier, rather than sent to its back, so the order of the crawl is kept. At most {@link #MAX_SCAN}
+     * urls are looked at: if none of them can go, the dispatcher waits for a host to be ready before looking
+     * again.
+     */
+    private Url next(long now) {
+        Url url;
+        while ((url = scheduler.pollReady(now)) != null) {
+            if (!budget.isHostSpent(url.getUrl())) {
+                return url;
+            }
+        }
+        while ((url = retries.pollDue(now)) != null) {
+            if (budget.isHostSpent(url.getUrl())) {
+                continue;
+            }
+            if (scheduler.tryAcquire(url, now)) {
+                return url;
+            }
+            if (!scheduler.park(url)) {
+                retries.postpone(url, now + RETRY_PAUSE);
+                break;
+            }
+        }
+        int scanned = 0;
+        for (Iterator<Url> it = held.iterator(); it.hasNext() && scanned < MAX_SCAN; ) {
+            url = it.next();
+            if (budget.isHostSpent(url.getUrl())) {
+                // dropped, no more pages can be requested from its host
+                it.remove();
+                continue;
+            }
+            scanned++;
+            if (scheduler.tryAcquire(url, now)) {
+                it.remove();
+                return url;
+            }
+            if (scheduler.park(url)) {
+                it.remove();
+            }
+        }
+        while (scanned < MAX_SCAN && !frontier.isEmpty()) {
+            url = frontier.poll();
+            if (budget.isHostSpent(url.getUrl())) {
+                continue;
+            }
+            scanned++;
+            if (scheduler.tryAcquire(url, now)) {
+                return url;
+            }
+            if (!scheduler.park(url)) {
+                held.addLast(url);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Crawls the given url in stages: the page is fetched, then analysed, then handed to the action. Each stage
+     * runs once the one before it is done, without a thread waiting on it. A page only moves on to a stage with
+     * a pool of its own once there is room for it there, so a stage that falls behind holds up the one before it.
+     */
+    private void crawl(Url toCrawl) {
+        CompletableFuture<Url> start = new CompletableFuture<>();
+        long started = System.nanoTime();
+        AtomicBoolean onWorker = new AtomicBoolean(true);
+        // the stages are all chained before the first is started, so none of them runs on the dispatching thread
+        CompletableFuture<FetchResponse> fetched = start.thenApplyAsync(url -> {
+            FetchResponse response = fetch(url, started);
+            if (parsers != null) {
+                acquire(parseSlots);
+                leaveWorker(onWorker);
+            }
+            return response;
+        }, workers);
+        CompletableFuture<FetchedPage> analysed = parsers == null
+                ? fetched.thenApply(response -> analyseStage(toCrawl, response, onWorker))
+                : fetched.thenApplyAsync(response -> {
+                    try {
+                        return analyseStage(toCrawl, response, onWorker);
+                    } finally {
+                        parseSlots.release();
+                    }
+                }, parsers);
+        CompletableFuture<Void> sunk = sinks == null
+                ? analysed.thenAccept(page -> sink(toCrawl, page))
+                : analysed.thenAcceptAsync(page -> {
+                    try {
+                        sink(toCrawl, page);
+                    } finally {
+                        sinkSlots.release();
+                    }
+                }, sinks);
+        sunk.whenComplete((ignored, e) -> finished(toCrawl, e, onWorker));
+        start.complete(toCrawl);
+    }
+
+    private FetchedPage analyseStage(Url toCrawl, FetchResponse response, AtomicBoolean onWorker) {
+        FetchedPage page = analyse(toCrawl, response);
+        if (sinks != null) {
+            acquire(sinkSlots);
+            leaveWorker(onWorker);
+        }
+        return page;
+    }
+
+    /**
+     * Waits for room in the next stage
+     */
+    private static void acquire(Semaphore slots) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            // only when the crawl is closed
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to hand on a page");
+        }
+    }
+
+    /**
+     * Lets the dispatcher know a page has been handed on from its worker, so another can be fetched
+     */
+    private void leaveWorker(AtomicBoolean onWorker) {
+        if (!onWorker.compareAndSet(true, false)) {
+            return;
+        }
+        lock.lock();
+        try {
+            fetching--;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FetchResponse fetch(Url toCrawl, long started) {
+        FetchResponse response;
+        try {
+            response = fetcher.fetch(toCrawl.getUrl(), validators(toCrawl.getUrl()));
+        } catch (IOException e) {
+            released(toCrawl, started, isTransient(e));
+            throw new CompletionException(e);
+        } catch (RuntimeException | Error e) {
+            released(toCrawl, started, false);
+            throw e;
+        }
+        released(toCrawl, started, false);
+        return response;
+    }
+
+    /**
+     * Lets the scheduler know the request to the given url has completed, so its host can be sent another
+     */
+    private void released(Url toCrawl, long started, boolean congested) {
+        lock.lock();
+        try {
+            scheduler.release(toCrawl.getUrl(), started, congested, System.nanoTime());
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finished(Url toCrawl, Throwable e, AtomicBoolean onWorker) {
+        try {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                handleFailedFetch(toCrawl, (IOException) cause);
+            } else if (cause != null) {
+                fail(cause);
+            }
+        } catch (RuntimeException | Error failed) {
+            fail(failed);
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                if (onWorker.compareAndSet(true, false)) {
+                    fetching--;
+                }
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Most likely a FatalError thrown by the FetchAction; stop handing out urls and
+     * let it propagate to the caller once the in-flight pages are done
+     */
+    private void fail(Throwable e) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Analyses a fetched page: it is parsed, or scanned, and its links are queued
+     *
+     * @return the page to hand to the action, or null if there is none to
+     */
+    private FetchedPage analyse(Url toCrawl, FetchResponse response) {
+        lock.lock();
+        try {
+            budget.fetched(response.getBody().length);
+        } finally {
+            lock.unlock();
+        }
+        long hash = 0;
+        if (cache != null) {
+            RecrawlCache.Entry cached = cache.get(toCrawl.getUrl());
+            hash = RecrawlCache.hash(response.getBody());
+            if (response.isNotModified() || (cached != null && cached.getContentHash() == hash)) {
+                return processUnchanged(toCrawl, response, cached);
+            }
+        }
+
+        // with the links scanned for, the page is only parsed if the action asks for its content
+        boolean scanned = streamingLinkExtraction && LinkScanner.canScan(response.getBody(), response.getCharset());
+        Document document = scanned ? null : parse(response);
+
+        FetchedPage fetchedPage = new FetchedPage();
+        fetchedPage.setUrl(toCrawl.getUrl());
+        fetchedPage.setStatus(200);
+        fetchedPage.setDocument(scanned ? () -> parseLazily(response) : () -> document);
+        fetchedPage.setLoadTime(response.getLoadTime());
+        fetchedPage.setSourceUrl(toCrawl.getSourceUrl());
+        fetchedPage.setTruncated(response.isTruncated());
+        // wrapped rather than copied, the body is not changed once fetched
+        fetchedPage.setBody(ByteBuffer.wrap(response.getBody()));
+        fetchedPage.setCharset(response.detectCharset());
+
+        if (cache != null || !isTooDeep(toCrawl)) {
+            Set<String> links = scanned ? webmuncher.extractAbsHref(response) : webmuncher.extractAbsHref(document);
+            if (cache != null) {
+                cache.put(toCrawl.getUrl(), response.getEtag(), response.getLastModified(), hash, links);
+            }
+            follow(toCrawl, links);
+        }
+        return fetchedPage;
+    }
+
+    /**
+     * Hands the page, if any, to the action, and marks its url as done
+     */
+    private void sink(Url toCrawl, FetchedPage page) {
+        if (page != null) {
+            action.process(page);
+        }
+        done(toCrawl.getUrl());
+    }
+
+    private static Document parse(FetchResponse response) {
+        try {
+            return response.parse();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Parses a page whose links were scanned for, once its content is asked for. The charset was checked when
+     * scanning, so the page is not expected to fail to parse
+     */
+    private static Document parseLazily(FetchResponse response) {
+        try {
+            return response.parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Processes a page that has not changed since the last crawl, either as told by the server, or as its hash
+     * is the same. The page is not parsed, the links found on it by the last crawl are followed instead.
+     */
+    private FetchedPage processUnchanged(Url toCrawl, FetchResponse response, RecrawlCache.Entry cached) {
+        FetchedPage fetchedPage = unchangedPage(toCrawl, response.getLoadTime());
+        if (cached == null) {
+            // not asked for, so not to be expected, but then there are no links to follow
+            return fetchedPage;
+        }
+
+        // a 304 need not repeat the validators, the server may also have sent new ones
+        String etag = response.isNotModified() && response.getEtag() == null ? cached.getEtag() : response.getEtag();
+        String lastModified = response.isNotModified() && response.getLastModified() == null
+                ? cached.getLastModified() : response.getLastModified();
+        cache.put(toCrawl.getUrl(), etag, lastModified, cached.getContentHash(), cached.getLinks());
+        follow(toCrawl, cached.getLinks());
+        return fetchedPage;
+    }
+
+    /**
+     * @return the page to hand to the action for a page that has not changed, or null if those are not
+     * processed
+     */
+    private FetchedPage unchangedPage(Url toCrawl, long loadTime) {
+        unchangedPages.incrementAndGet();
+        if (!processUnchangedPages) {
+            return null;
+        }
+        FetchedPage fetchedPage = new FetchedPage();
+        fetchedPage.setUrl(toCrawl.getUrl());
+        fetchedPage.setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+        fetchedPage.setLoadTime(loadTime);
+        fetchedPage.setSourceUrl(toCrawl.getSourceUrl());
+        return fetchedPage;
+    }
+
+    private boolean isTooDeep(Url toCrawl) {
+        return maxDepth >= 0 && toCrawl.getDepth() >= maxDepth;
+    }
+
+    private void follow(Url toCrawl, Collection<String> links) {
+        if (isTooDeep(toCrawl)) {
+            // the links found are too deep to be crawled
+            return;
+        }
+        for (String href : links) {
+            enqueue(toCrawl.link(href));
+        }
+    }
+
+    private void enqueue(Url url) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (!frontier.accepts(url)) {
+                // checked before it is marked as seen, or it would be lost for good
+                logger.warn("Encountered {} but it is too long to be queued", url.getUrl());
+                return;
+            }
+            if (!frontier.markSeen(url.getUrl())) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // the url is now marked as seen, so this check is only done once per url
+        if (!webmuncher.include(url.getUrl())) {
+            logger.info("Encountered {} but excluding from crawling", url.getUrl());
+            return;
+        }
+        if (webmuncher.hasSkippedExtension(url.getUrl())) {
+            skip(url);
+            return;
+        }
+        if (robots != null && !robots.isAllowed(url.getUrl())) {
+            logger.info("Encountered {} but it is disallowed by robots.txt", url.getUrl());
+            return;
+        }
+
+        if (journal != null) {
+            journal.queued(url);
+        }
+        lock.lock();
+        try {
+            if (closed || budget.isHostSpent(url.getUrl())) {
+                return;
+            }
+            frontier.add(url);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (preResolveHosts) {
+            dns.preResolve(HostScheduler.hostOf(url.getUrl()));
+        }
+    }
+
+    /**
+     * Reports the given url as content that is not a page, as it would be once fetched, without fetching it
+     */
+    private void skip(Url url) {
+        skippedUrls.incrementAndGet();
+        logger.info("Encountered {} but skipping it, its extension is not that of a page", url.getUrl());
+        FetchedPage fetchedPage = new FetchedPage();
+        fetchedPage.setUrl(url.getUrl());
+        fetchedPage.setStatus(415);
+        fetchedPage.setSourceUrl(url.getSourceUrl());
+        action.process(fetchedPage);
+        done(url.getUrl());
+    }
+
+    private void done(String url) {
+        crawled(url);
+        if (journal != null) {
+            journal.done(url);
+        }
+    }
+
+    private void crawled(String url) {
+        if (collectCrawledUrls) {
+            crawledURLs.add(url);
+        }
+    }
+
+    private void handleFailedFetch(Url toCrawl, IOException e) {
+        if (isTransient(e) && retry(toCrawl, e)) {
+            return;
+        }
+
+        FetchedPage fetchedPage = new FetchedPage();
+        if (e instanceof UnsupportedMimeTypeException) {
+            fetchedPage.setStatus(415);
+            done(toCrawl.getUrl());
+        } else if (e instanceof SocketTimeoutException) {
+            // not marked as done, so it gets another go if the crawl is resumed
+            fetchedPage.setStatus(408);
+        } else if (e instanceof PageTooLargeException) {
+            fetchedPage.setStatus(413);
+            done(toCrawl.getUrl());
+        } else if (e instanceof HttpStatusException) {
+            fetchedPage.setStatus(((HttpStatusException) e).getStatusCode());
+            done(toCrawl.getUrl());
+        } else {
+            fetchedPage.setStatus(404);
+            done(toCrawl.getUrl());
+        }
+        if (cache != null && !(e instanceof SocketTimeoutException)) {
+            // the page is gone, or not one to crawl, so it is fetched in full should it come back
+            cache.remove(toCrawl.getUrl());
+        }
+        fetchedPage.setUrl(toCrawl.getUrl());
+        fetchedPage.setSourceUrl(toCrawl.getSourceUrl());
+        // the action's process is still called because
+        // we want to save the url that were broken, for instance
+        action.process(fetchedPage);
+        if (errorAction != null) {
+            errorAction.process(toCrawl.getUrl(), e);
+        }
+        logger.error("Failed to crawl {}. With error message: {}", toCrawl.getUrl(), e);
+    }
+
+    /**
+     * Schedules another go at the given url, if it has not been retried too many times already
+     *
+     * @return true if the url will be retried
+     */
+    private boolean retry(Url toCrawl, IOException e) {
+        long now = System.nanoTime();
+        long wait;
+        lock.lock();
+        try {
+            wait = retries.retry(toCrawl, now);
+            if (wait < 0) {
+                return false;
+            }
+            if (isThrottled(e)) {
+                // the host is asking to be left alone for a while
+                scheduler.backOff(toCrawl.getUrl(), wait, now);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        logger.warn("Failed to crawl {}, retrying in {}ms. With error message: {}", toCrawl.getUrl(),
+                TimeUnit.NANOSECONDS.toMillis(wait), e.getMessage());
+        return true;
+    }
+
+    /**
+     * Returns true for failures that may not happen again: time outs, refused connections, and server errors
+     */
+    private static boolean isTransient(IOException e) {
+        if (e instanceof SocketTimeoutException || e instanceof ConnectException) {
+            return true;
+        }
+        return e instanceof HttpStatusException && (isThrottled(e) || ((HttpStatusException) e).getStatusCode() >= 500);
+    }
+
+    private static boolean isThrottled(IOException e) {
+        if (!(e instanceof HttpStatusException)) {
+            return false;
+        }
+        int status = ((HttpStatusException) e).getStatusCode();
+        return status == 429 || status == 503;
+    }
+}
@@ -0,0 +1,313 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of a crawl, from which an interrupted crawl can be resumed.
+ * <p>
+ * Every URL queued, and every URL done with, is recorded. Replaying the journal thus gives back the URLs seen,
+ * and those of them still to be crawled. Records are handed to a background thread that appends them to the
+ * file and syncs it to disk about every second, so the workers never wait on the disk. A crash loses at most
+ * the last second of records: the URLs concerned are then crawled again on resume, or, for queued URLs
+ * that were lost, not at all.
+ * <p>
+ * The file starts with a header holding the URL the crawl started from. Each record is a type byte followed
+ * by the URL, and for queued URLs, by the URL of the page it was found on and the depth of the URL. URLs are
+ * written as the length of their UTF-8 bytes followed by the bytes, so that they can be of any length. A
+ * record torn by a crash is dropped when the journal is appended to again.
+ *
+ * @author Dadepo Aderemi.
+ */
+class CrawlJournal implements Closeable {
+
+    private static final int MAGIC = 0x574d4a32;
+    private static final byte QUEUED = 'Q';
+    private static final byte DONE = 'D';
+    private static final long SYNC_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final Record STOP = new Record((byte) 0, null, null, 0);
+
+    private final Logger logger = LoggerFactory.getLogger(CrawlJournal.class);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final BlockingQueue<Record> records = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean failed = false;
+
+    private CrawlJournal(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        this.writer = new Thread(this::write, "webmuncher-checkpoint");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts a new journal at the given path, replacing any existing file
+     *
+     * @param path the journal file
+     * @param seed the URL the crawl starts from
+     * @return the journal
+     * @throws IOException if the journal could not be created
+     */
+    static CrawlJournal create(Path path, String seed) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        CrawlJournal journal = new CrawlJournal(path, channel);
+        try {
+            journal.out.writeInt(MAGIC);
+            writeString(journal.out, seed);
+            journal.sync();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        journal.writer.start();
+        return journal;
+    }
+
+    /**
+     * Opens an existing journal to append to it
+     *
+     * @param path   the journal file
+     * @param length the length of the journal, as given by {@link #replay(Path, Consumer, Consumer)}. What
+     *               follows, a torn record, is dropped
+     * @return the journal
+     * @throws IOException if the journal could not be opened
+     */
+    static CrawlJournal append(Path path, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        CrawlJournal journal = new CrawlJournal(path, channel);
+        journal.writer.start();
+        return journal;
+    }
+
+    /**
+     * Reads the URL the journaled crawl started from
+     *
+     * @param path the journal file
+     * @return the URL the crawl started from
+     * @throws IOException if the file could not be read, or is not a journal
+     */
+    static String seed(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return readHeader(path, in);
+        }
+    }
+
+    /**
+     * Replays the journal, in the order the records were written
+     *
+     * @param path   the journal file
+     * @param queued called with each URL queued
+     * @param done   called with each URL done with
+     * @return the length of the journal, up to the last complete record
+     * @throws IOException if the file could not be read, or is not a journal
+     */
+    static long replay(Path path, Consumer<Url> queued, Consumer<String> done) throws IOException {
+        try (CountingInputStream counting =
+                     new CountingInputStream(new BufferedInputStream(Files.newInputStream(path)));
+             DataInputStream in = new DataInputStream(counting)) {
+            readHeader(path, in);
+            long length = counting.count;
+            try {
+                while (true) {
+                    int type = in.read();
+                    if (type == QUEUED) {
+                        String url = readString(in);
+                        String sourceUrl = readString(in);
+                        queued.accept(new Url(url, sourceUrl, in.readInt()));
+                    } else if (type == DONE) {
+                        done.accept(readString(in));
+                    } else {
+                        // the end of the journal, or what is left of a record torn by a crash
+                        break;
+                    }
+                    length = counting.count;
+                }
+            } catch (EOFException e) {
+                // a record torn by a crash
+            }
+            return length;
+        }
+    }
+
+    private static String readHeader(Path path, DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() == MAGIC) {
+                return readString(in);
+            }
+        } catch (EOFException e) {
+            // too short to be a journal
+        }
+        throw new IOException(path + " is not a crawl checkpoint");
+    }
+
+    /**
+     * Records that the given url has been queued
+     *
+     * @param url the url queued
+     */
+    void queued(Url url) {
+        add(new Record(QUEUED, url.getUrl(), url.getSourceUrl(), url.getDepth()));
+    }
+
+    /**
+     * Records that the given url has been crawled, or failed in a way it should not be crawled again
+     *
+     * @param url the url done with
+     */
+    void done(String url) {
+        add(new Record(DONE, url, null, 0));
+    }
+
+    private void add(Record record) {
+        if (!failed) {
+            records.add(record);
+        }
+    }
+
+    /**
+     * Writes out the records still pending, and closes the journal
+     */
+    @Override
+    public void close() throws IOException {
+        records.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write() {
+        long lastSync = System.nanoTime();
+        try {
+            while (true) {
+                Record record = records.poll(SYNC_INTERVAL, TimeUnit.NANOSECONDS);
+                if (record == STOP) {
+                    break;
+                }
+                if (record != null) {
+                    out.writeByte(record.type);
+                    writeString(out, record.url);
+                    if (record.type == QUEUED) {
+                        writeString(out, record.sourceUrl);
+                        out.writeInt(record.depth);
+                    }
+                }
+                if (System.nanoTime() - lastSync >= SYNC_INTERVAL) {
+                    sync();
+                    lastSync = System.nanoTime();
+                }
+            }
+            sync();
+        } catch (IOException e) {
+            failed = true;
+            records.clear();
+            logger.error("Failed to write the checkpoint {}. The crawl carries on without it", path, e);
+        } catch (InterruptedException e) {
+            failed = true;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length " + length + " of a string in the checkpoint");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    private static class Record {
+        private final byte type;
+        private final String url;
+        private final String sourceUrl;
+        private final int depth;
+
+        private Record(byte type, String url, String sourceUrl, int depth) {
+            this.type = type;
+            this.url = url;
+            this.sourceUrl = sourceUrl;
+            this.depth = depth;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.blogspot.geekabyte.webmuncher;
+
+/**
+ * The order in which the URLs found are crawled. See {@link Webmuncher#setCrawlOrder(CrawlOrder)}
+ *
+ * @author Dadepo Aderemi.
+ */
+public enum CrawlOrder {
+
+    /**
+     * In the order the URLs are found. This is the default
+     */
+    DISCOVERY,
+
+    /**
+     * The URLs the fewest links away from the URL the crawl started at first
+     */
+    BREADTH_FIRST,
+
+    /**
+     * By the first of the patterns given to {@link Webmuncher#match(String...)} that the URL matches, the URLs
+     * matching the pattern given first, first. Then breadth first.
+     */
+    MATCH_PATTERN,
+
+    /**
+     * By the score given by the {@link com.blogspot.geekabyte.webmuncher.interfaces.UrlScorer} set with
+     * {@link Webmuncher#setUrlScorer(com.blogspot.geekabyte.webmuncher.interfaces.UrlScorer)}, the highest
+     * score first. Then breadth first.
+     */
+    SCORE
+}
@@ -0,0 +1,230 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.exceptions.FatalError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link UrlQueue} that keeps at most a given number of URLs in memory, at its head. The rest is appended to
+ * memory-mapped segment files on disk and read back, in order, as the head drains. Segment files are deleted once
+ * read, so the disk used is bounded by the size of the queue and not by the number of URLs that went through it.
+ * <p>
+ * Records are written as the length prefixed UTF-8 bytes of the url followed by those of the source url, and
+ * the depth of the url.
+ * <p>
+ * The mapping of a segment is released when the segment is deleted. Java has no public API for this, so it is
+ * done reflectively, through {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later and through the cleaner
+ * of the buffer on Java 8. Where neither can be reached, the mapping, and on some platforms the deleted file,
+ * is only released once the buffer is garbage collected.
+ *
+ * @author Dadepo Aderemi.
+ */
+class DiskUrlQueue implements UrlQueue {
+
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Logger logger = LoggerFactory.getLogger(DiskUrlQueue.class);
+
+    private final Path directory;
+    private final int maxInMemory;
+    private final int segmentSize;
+    private final Deque<Url> head = new ArrayDeque<>();
+    // the first segment is read from, the last is written to
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long onDisk = 0;
+    private int segmentCount = 0;
+
+    /**
+     * @param parent      the directory under which the segment files are written
+     * @param maxInMemory the number of urls to keep in memory
+     */
+    DiskUrlQueue(Path parent, int maxInMemory) {
+        this(parent, maxInMemory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    DiskUrlQueue(Path parent, int maxInMemory, int segmentSize) {
+        this.maxInMemory = maxInMemory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(parent);
+            this.directory = Files.createTempDirectory(parent, "frontier");
+        } catch (IOException e) {
+            logger.error("Could not create frontier directory under {}", parent, e);
+            throw new FatalError("Frontier directory can not be created under " + parent);
+        }
+    }
+
+    /**
+     * @return false if the record of the url, with the end of segment marker after it, does not fit in a segment
+     */
+    @Override
+    public boolean accepts(Url url) {
+        return recordSize(url.getUrl().getBytes(StandardCharsets.UTF_8),
+                url.getSourceUrl().getBytes(StandardCharsets.UTF_8)) + 4 <= segmentSize;
+    }
+
+    @Override
+    public void add(Url url) {
+        if (onDisk == 0 && head.size() < maxInMemory) {
+            head.addLast(url);
+            return;
+        }
+        write(url);
+    }
+
+    @Override
+    public Url poll() {
+        if (head.isEmpty()) {
+            while (onDisk > 0 && head.size() < maxInMemory) {
+                head.addLast(read());
+            }
+        }
+        return head.pollFirst();
+    }
+
+    @Override
+    public long size() {
+        return head.size() + onDisk;
+    }
+
+    /**
+     * @return the number of urls held on disk
+     */
+    long onDisk() {
+        return onDisk;
+    }
+
+    @Override
+    public void close() {
+        head.clear();
+        while (!segments.isEmpty()) {
+            delete(segments.pollFirst());
+        }
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            logger.debug("Could not delete frontier directory {}", directory, e);
+        }
+    }
+
+    private void write(Url url) {
+        byte[] address = url.getUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] source = url.getSourceUrl().getBytes(StandardCharsets.UTF_8);
+        int recordSize = recordSize(address, source);
+        if (recordSize + 4 > segmentSize) {
+            throw new IllegalArgumentException(url.getUrl() + " is too long to be queued");
+        }
+
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writer.remaining() < recordSize + 4) {
+            if (segment != null) {
+                segment.writer.putInt(END_OF_SEGMENT);
+            }
+            segment = newSegment();
+            segments.addLast(segment);
+        }
+        segment.writer.putInt(address.length).put(address);
+        segment.writer.putInt(source.length).put(source);
+        segment.writer.putInt(url.getDepth());
+        onDisk++;
+    }
+
+    private int recordSize(byte[] address, byte[] source) {
+        return 4 + address.length + 4 + source.length + 4;
+    }
+
+    private Url read() {
+        Segment segment = segments.peekFirst();
+        int length = segment.reader.getInt();
+        if (length == END_OF_SEGMENT) {
+            delete(segments.pollFirst());
+            segment = segments.peekFirst();
+            length = segment.reader.getInt();
+        }
+        String address = readString(segment.reader, length);
+        String source = readString(segment.reader, segment.reader.getInt());
+        int depth = segment.reader.getInt();
+        onDisk--;
+        return new Url(address, source, depth);
+    }
+
+    private String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Segment newSegment() {
+        Path path = directory.resolve("segment-" + segmentCount++);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            logger.error("Could not create frontier segment {}", path, e);
+            throw new FatalError("Frontier segment can not be created at " + path);
+        }
+    }
+
+    private void delete(Segment segment) {
+        unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.debug("Could not delete frontier segment {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Releases the mapping of a segment done with. The buffer, and the views of it, must not be used afterwards
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8, where the buffer has a cleaner of its own
+                Method cleanerOf = buffer.getClass().getMethod("cleaner");
+                cleanerOf.setAccessible(true);
+                Object cleaner = cleanerOf.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Could not unmap frontier segment, leaving it to the garbage collector", e);
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final ByteBuffer writer;
+        private final ByteBuffer reader;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.writer = buffer;
+            this.reader = buffer.duplicate();
+        }
+    }
+}
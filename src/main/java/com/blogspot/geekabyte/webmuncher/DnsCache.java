@@ -0,0 +1,172 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks up hosts ahead of their pages being fetched, and remembers for a while those that could not be found.
+ * <p>
+ * Connections are made by the JDK, which looks hosts up through {@link InetAddress}, and caches what it found
+ * for {@code networkaddress.cache.ttl} seconds. Hosts are thus looked up in the background as soon as they are
+ * seen, so the lookup a fetch does is answered from the JDK's cache, rather than holding up a worker. A host is
+ * not looked up again until the JDK has forgotten it.
+ * <p>
+ * A host that could not be found is not looked up again for the negative time to live: fetches of its pages
+ * fail straight away with an {@link UnknownHostException}. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class DnsCache implements Closeable {
+
+    private static final long DEFAULT_TTL = TimeUnit.SECONDS.toNanos(30);
+    private static final int THREADS = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(DnsCache.class);
+
+    private final Resolver resolver;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService lookups;
+
+    /**
+     * @param negativeTtl how long a host that could not be found is remembered, in nanoseconds
+     */
+    DnsCache(long negativeTtl) {
+        this(InetAddress::getAllByName, jvmTtl(), negativeTtl);
+    }
+
+    /**
+     * @param resolver    looks hosts up
+     * @param ttl         how long a host found is not looked up again, in nanoseconds
+     * @param negativeTtl how long a host that could not be found is remembered, in nanoseconds
+     */
+    DnsCache(Resolver resolver, long ttl, long negativeTtl) {
+        this.resolver = resolver;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        AtomicInteger threads = new AtomicInteger();
+        this.lookups = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "webmuncher-dns-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks the given host up in the background, unless it has been lately
+     *
+     * @param host the host
+     */
+    void preResolve(String host) {
+        if (host.isEmpty() || isFresh(entries.get(host), System.nanoTime()) || !inFlight.add(host)) {
+            return;
+        }
+        try {
+            lookups.execute(() -> {
+                try {
+                    resolve(host);
+                } finally {
+                    inFlight.remove(host);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed, the crawl is over
+            inFlight.remove(host);
+        }
+    }
+
+    /**
+     * Fails if the given host was lately found not to exist
+     *
+     * @param host the host
+     * @throws UnknownHostException if the host was lately found not to exist
+     */
+    void check(String host) throws UnknownHostException {
+        Entry entry = entries.get(host);
+        if (entry != null && !entry.found && isFresh(entry, System.nanoTime())) {
+            throw new UnknownHostException(host + " (not found in a lookup less than "
+                    + TimeUnit.NANOSECONDS.toSeconds(negativeTtl) + "s ago)");
+        }
+    }
+
+    /**
+     * Remembers that the given host could not be found when fetching a page
+     *
+     * @param host the host
+     */
+    void notFound(String host) {
+        entries.put(host, new Entry(false, System.nanoTime() + negativeTtl));
+    }
+
+    private void resolve(String host) {
+        try {
+            resolver.resolve(host);
+            entries.put(host, new Entry(true, System.nanoTime() + ttl));
+        } catch (UnknownHostException e) {
+            logger.warn("Failed to look up {}. Its pages will fail", host);
+            notFound(host);
+        }
+    }
+
+    private static boolean isFresh(Entry entry, long now) {
+        return entry != null && entry.expires - now > 0;
+    }
+
+    /**
+     * Stops the lookups in the background
+     */
+    @Override
+    public void close() {
+        lookups.shutdownNow();
+    }
+
+    /**
+     * @return how long the JDK caches the hosts it found, as configured by {@code networkaddress.cache.ttl}
+     */
+    static long jvmTtl() {
+        String ttl = Security.getProperty("networkaddress.cache.ttl");
+        if (ttl == null) {
+            return DEFAULT_TTL;
+        }
+        try {
+            long seconds = Long.parseLong(ttl.trim());
+            // a negative time to live has hosts cached for ever
+            return seconds < 0 ? Long.MAX_VALUE / 2 : TimeUnit.SECONDS.toNanos(seconds);
+        } catch (NumberFormatException e) {
+            return DEFAULT_TTL;
+        }
+    }
+
+    /**
+     * Looks a host up
+     */
+    @FunctionalInterface
+    interface Resolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    private static class Entry {
+        private final boolean found;
+        private final long expires;
+
+        private Entry(boolean found, long expires) {
+            this.found = found;
+            this.expires = expires;
+        }
+    }
+}
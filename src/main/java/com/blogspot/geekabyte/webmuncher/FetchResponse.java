@@ -0,0 +1,164 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A page fetched by {@link HttpFetcher}: its body, and what is needed to parse it
+ *
+ * @author Dadepo Aderemi.
+ */
+class FetchResponse {
+    // as the html spec has it, a meta tag giving the charset is looked for in the first 1024 bytes
+    private static final int META_SCAN = 1024;
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]*charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final String url;
+    private final int status;
+    private final String contentType;
+    private final String charset;
+    private final byte[] body;
+    private final long loadTime;
+    private final String etag;
+    private final String lastModified;
+    private final boolean truncated;
+
+    FetchResponse(String url, int status, String contentType, String charset, byte[] body, boolean truncated,
+                  long loadTime, String etag, String lastModified) {
+        this.url = url;
+        this.status = status;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.body = body;
+        this.truncated = truncated;
+        this.loadTime = loadTime;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the url of the page, after redirects
+     */
+    String getUrl() {
+        return url;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the charset given in the content type, or null if none is given
+     */
+    String getCharset() {
+        return charset;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return true if the body is only the first bytes of the page, the page being larger than allowed
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the time taken to fetch the page, in milliseconds
+     */
+    long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * @return the ETag sent with the page, or null if none was sent
+     */
+    String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return the Last-Modified sent with the page, or null if none was sent
+     */
+    String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return true if the server answered a conditional request with 304 Not Modified, in which case the body
+     * is empty
+     */
+    boolean isNotModified() {
+        return status == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Works out the charset of the body without decoding it: the one given in the content type, or else the one
+     * its byte order mark is for, or else the one given by its meta tags, or else UTF-8
+     *
+     * @return the charset of the body
+     */
+    Charset detectCharset() {
+        Charset given = charsetOf(charset);
+        if (given != null) {
+            return given;
+        }
+        if (body.length >= 3 && body[0] == (byte) 0xef && body[1] == (byte) 0xbb && body[2] == (byte) 0xbf) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && body[0] == (byte) 0xfe && body[1] == (byte) 0xff) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (body.length >= 2 && body[0] == (byte) 0xff && body[1] == (byte) 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+        // the tags are ASCII in any charset that can be given by them
+        String head = new String(body, 0, Math.min(body.length, META_SCAN), StandardCharsets.ISO_8859_1);
+        Matcher meta = META_CHARSET.matcher(head);
+        if (meta.find()) {
+            Charset declared = charsetOf(meta.group(1));
+            if (declared != null) {
+                return declared;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetOf(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            // not a valid name, or not supported
+            return null;
+        }
+    }
+
+    /**
+     * Parses the body. Without a charset in the content type, the charset is taken from the page's meta tags,
+     * and is otherwise UTF-8
+     *
+     * @return the parsed page
+     * @throws IOException if the charset is not supported
+     */
+    Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+    }
+}
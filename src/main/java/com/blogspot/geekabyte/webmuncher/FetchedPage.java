@@ -1,7 +1,21 @@
 package com.blogspot.geekabyte.webmuncher;
 
+import org.jsoup.nodes.Document;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.function.Supplier;
+
 /**
  * Class representing fetched web pages
+ * <p>
+ * The html, plain text and title of a page crawled are worked out from its parsed document only when asked
+ * for, once, so a {@link com.blogspot.geekabyte.webmuncher.interfaces.FetchAction} that does not need them
+ * does not pay for them. The document itself may only be parsed then, if the links of the page were found
+ * without it.
+ * <p>
+ * The body of the page, as fetched, is also given as bytes, along with its charset, so that an action that
+ * stores pages can write them out as they are, without decoding them into strings first.
  *
  * @author Dadepo Aderemi.
  */
@@ -13,8 +27,15 @@ public class FetchedPage {
     private String title;
     private long loadTime;
     private String html;
+    private boolean htmlSet;
     private String plainText;
     private String sourceUrl;
+    private boolean truncated;
+    private ByteBuffer body;
+    private Charset charset;
+    // the html, plain text and title not yet set are worked out from it
+    private Supplier<Document> document;
+    private Document parsed;
 
     /**
      * Gets the url of the fetched page 
@@ -53,6 +74,9 @@ public class FetchedPage {
      * @return the title of the page
      */
     public String getTitle() {
+        if (title == null && document != null) {
+            title = document().title();
+        }
         return title;
     }
 
@@ -85,6 +109,9 @@ public class FetchedPage {
      * @return the content of the page as HTML string
      */
     public String getHtml() {
+        if (html == null && document != null) {
+            html = document().outerHtml();
+        }
         return html;
     }
 
@@ -94,6 +121,15 @@ public class FetchedPage {
      */
     public void setHtml(String html) {
         this.html = html;
+        this.htmlSet = html != null;
+    }
+
+    /**
+     * Tells if the html of the page was set, rather than left to be worked out from its parsed document
+     * @return true if the html was set
+     */
+    public boolean isHtmlSet() {
+        return htmlSet;
     }
 
     /**
@@ -101,6 +137,9 @@ public class FetchedPage {
      * @return the content of the page as plain text
      */
     public String getPlainText() {
+        if (plainText == null && document != null) {
+            plainText = document().text();
+        }
         return plainText;
     }
 
@@ -127,4 +166,70 @@ public class FetchedPage {
     public void setSourceUrl(String sourceUrl) {
         this.sourceUrl = sourceUrl;
     }
+
+    /**
+     * Gets whether only the first bytes of the page were fetched, the page being larger than allowed
+     * @return true if the page was truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Sets whether only the first bytes of the page were fetched
+     * @param truncated true if the page was truncated
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    /**
+     * Gets the body of the page, as fetched, without copying it. The buffer is read only, and its position and
+     * limit are the caller's own, so it can be read from without affecting other callers
+     * @return the body of the page, or null if it was not fetched, as with a page that has not changed
+     */
+    public ByteBuffer getBody() {
+        return body == null ? null : body.asReadOnlyBuffer();
+    }
+
+    /**
+     * Sets the body of the page, as fetched
+     * @param body the body of the page
+     */
+    public void setBody(ByteBuffer body) {
+        this.body = body;
+    }
+
+    /**
+     * Gets the charset the body of the page is in: the one given in its content type, or else by its byte order
+     * mark, or else by its meta tags, or else UTF-8
+     * @return the charset of the body, or null if there is no body
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Sets the charset the body of the page is in
+     * @param charset the charset of the body
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets the parsed document of the page, from which the html, plain text and title are worked out if asked
+     * for and not set
+     * @param document gives the parsed document of the page, asked for once at most
+     */
+    void setDocument(Supplier<Document> document) {
+        this.document = document;
+    }
+
+    private Document document() {
+        if (parsed == null) {
+            parsed = document.get();
+        }
+        return parsed;
+    }
 }
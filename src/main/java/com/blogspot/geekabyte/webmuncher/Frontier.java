@@ -0,0 +1,76 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.dedup.HashSetSeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+
+import java.io.Closeable;
+
+/**
+ * The URLs still to be crawled, in the order they were discovered, and the URLs seen so far.
+ * <p>
+ * A URL is marked as seen once, when it is first found, and only then checked and queued, so it is only ever
+ * queued once. All operations are constant time, so the cost of a crawl grows linearly with the size of the site.
+ * The queued URLs are held by a {@link UrlQueue}, either in memory or, for crawls larger than the heap, mostly on
+ * disk. The URLs seen are remembered by a {@link SeenUrlStore}.
+ * <p>
+ * Not thread safe, {@link CrawlJob} guards access to it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class Frontier implements Closeable {
+
+    private final SeenUrlStore seen;
+    private final UrlQueue queue;
+
+    Frontier() {
+        this(new InMemoryUrlQueue(), new HashSetSeenUrlStore());
+    }
+
+    Frontier(UrlQueue queue, SeenUrlStore seen) {
+        this.queue = queue;
+        this.seen = seen;
+    }
+
+    /**
+     * @param url the url
+     * @return false if the url can not be queued, so it should not be marked as seen either
+     */
+    boolean accepts(Url url) {
+        return queue.accepts(url);
+    }
+
+    /**
+     * Marks the given url as seen, without queueing it
+     *
+     * @param url the url
+     * @return true if the url has not been seen before
+     */
+    boolean markSeen(String url) {
+        return seen.add(url);
+    }
+
+    /**
+     * Queues a url, which must have been marked as seen first
+     *
+     * @param url the url to queue
+     */
+    void add(Url url) {
+        queue.add(url);
+    }
+
+    /**
+     * @return the next url to crawl, or null if there is none
+     */
+    Url poll() {
+        return queue.poll();
+    }
+
+    boolean isEmpty() {
+        return queue.size() == 0;
+    }
+
+    @Override
+    public void close() {
+        queue.close();
+    }
+}
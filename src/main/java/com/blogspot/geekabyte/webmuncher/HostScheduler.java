@@ -0,0 +1,249 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps track of when each host may be requested again, so that the delay between requests is
+ * honoured per host without holding up requests to other hosts.
+ * <p>
+ * Each request to a host pushes the time the host may next be requested by the delay for that host. A URL whose
+ * host can not be requested yet is parked until it can, in a small queue per host, while URLs for other hosts
+ * carry on being handed out.
+ * <p>
+ * Made adaptive, each host also gets an {@link AdaptiveLimit}, which caps the number of requests in flight to it,
+ * and paces them, going by how the requests completed. A host with as many requests in flight as its limit
+ * allows has its parked urls held until one of them completes.
+ * <p>
+ * Times are in nanoseconds as given by {@link System#nanoTime()}. Not thread safe, {@link CrawlJob} guards
+ * access to it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class HostScheduler {
+
+    private final Map<String, Host> hosts = new HashMap<>();
+    // hosts with parked urls that can be sent another request, the one that may be requested the soonest first
+    private final PriorityQueue<Host> parkedHosts = new PriorityQueue<>(Comparator.comparingLong(h -> h.nextAllowed));
+    private final ToLongFunction<String> delay;
+    private final int maxParkedPerHost;
+    private final int maxPerHost;
+    private int parked = 0;
+
+    /**
+     * @param delay            gives the delay, in nanoseconds, to observe after a request to the given host
+     * @param maxParkedPerHost the number of urls that can be parked per host
+     */
+    HostScheduler(ToLongFunction<String> delay, int maxParkedPerHost) {
+        this(delay, maxParkedPerHost, -1);
+    }
+
+    /**
+     * @param delay            gives the delay, in nanoseconds, to observe after a request to the given host
+     * @param maxParkedPerHost the number of urls that can be parked per host
+     * @param maxPerHost       the most requests a host can be sent at the same time, its limit adapting up to it,
+     *                         or -1 for hosts to be sent as many as are handed out
+     */
+    HostScheduler(ToLongFunction<String> delay, int maxParkedPerHost, int maxPerHost) {
+        this.delay = delay;
+        this.maxParkedPerHost = maxParkedPerHost;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Reserves a request to the host of the given url, if the host can be requested now and has no parked urls
+     * that should go first
+     *
+     * @param url the url to request
+     * @param now the current time
+     * @return true if the url can be requested now
+     */
+    boolean tryAcquire(Url url, long now) {
+        Host host = host(hostOf(url.getUrl()));
+        if (!host.parked.isEmpty() || host.nextAllowed > now || host.isFull()) {
+            return false;
+        }
+        reserve(host, now);
+        return true;
+    }
+
+    /**
+     * Parks the given url until its host can be requested
+     *
+     * @param url the url to park
+     * @return false if too many urls are already parked for the host
+     */
+    boolean park(Url url) {
+        Host host = host(hostOf(url.getUrl()));
+        if (host.parked.size() >= maxParkedPerHost) {
+            return false;
+        }
+        host.parked.addLast(url);
+        parked++;
+        queue(host);
+        return true;
+    }
+
+    /**
+     * Hands out a parked url whose host can now be requested, and reserves the request
+     *
+     * @param now the current time
+     * @return a parked url, or null if none of the hosts with parked urls can be requested yet
+     */
+    Url pollReady(long now) {
+        Host host = parkedHosts.peek();
+        if (host == null || host.nextAllowed > now) {
+            return null;
+        }
+        parkedHosts.poll();
+        host.queued = false;
+        Url url = host.parked.pollFirst();
+        parked--;
+        reserve(host, now);
+        queue(host);
+        return url;
+    }
+
+    /**
+     * Records a request made to the given host outside of the scheduler. It is released like any other
+     *
+     * @param url the url requested
+     * @param now the current time
+     */
+    void reserve(String url, long now) {
+        reserve(host(hostOf(url)), now);
+    }
+
+    /**
+     * Records that a request handed out, or reserved, has completed, and adapts the limit of its host to how
+     * it went
+     *
+     * @param url       the url requested
+     * @param started   when the request was sent
+     * @param congested true if the request timed out, or was refused by a host struggling to keep up
+     * @param now       the current time
+     */
+    void release(String url, long started, boolean congested, long now) {
+        Host host = host(hostOf(url));
+        host.inFlight--;
+        if (host.limit != null) {
+            if (congested) {
+                host.limit.congested(started, now);
+            } else {
+                host.limit.succeeded(now - started);
+            }
+        }
+        queue(host);
+    }
+
+    /**
+     * @return the number of requests each host can currently be sent at the same time, or an empty map if the
+     * limits do not adapt
+     */
+    Map<String, Integer> limits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (Host host : hosts.values()) {
+            if (host.limit != null) {
+                limits.put(host.name, host.limit.limit());
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * Holds off requests to the host of the given url for the given time, for instance because it is
+     * struggling to keep up
+     *
+     * @param url   a url on the host
+     * @param nanos how long to hold off
+     * @param now   the current time
+     */
+    void backOff(String url, long nanos, long now) {
+        Host host = host(hostOf(url));
+        boolean isQueued = host.queued && parkedHosts.remove(host);
+        host.nextAllowed = Math.max(host.nextAllowed, now + nanos);
+        if (isQueued) {
+            parkedHosts.add(host);
+        }
+    }
+
+    /**
+     * @param now the current time
+     * @return nanoseconds until a parked url can be handed out, or -1 if there are no parked urls
+     */
+    long nanosUntilReady(long now) {
+        Host host = parkedHosts.peek();
+        if (host == null) {
+            return -1;
+        }
+        return Math.max(0, host.nextAllowed - now);
+    }
+
+    /**
+     * @return the number of urls parked
+     */
+    int parked() {
+        return parked;
+    }
+
+    private void reserve(Host host, long now) {
+        long wait = delay.applyAsLong(host.name);
+        if (host.limit != null) {
+            wait = Math.max(wait, host.limit.pace());
+        }
+        host.nextAllowed = Math.max(host.nextAllowed, now) + wait;
+        host.inFlight++;
+    }
+
+    /**
+     * Queues the host for its parked urls to be handed out, if it has any and can be sent another request
+     */
+    private void queue(Host host) {
+        if (!host.queued && !host.parked.isEmpty() && !host.isFull()) {
+            parkedHosts.add(host);
+            host.queued = true;
+        }
+    }
+
+    private Host host(String name) {
+        return hosts.computeIfAbsent(name,
+                key -> new Host(key, maxPerHost > 0 ? new AdaptiveLimit(maxPerHost) : null));
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = new URI(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ENGLISH);
+        } catch (URISyntaxException e) {
+            return "";
+        }
+    }
+
+    private static class Host {
+        private final String name;
+        private final AdaptiveLimit limit;
+        private final Deque<Url> parked = new ArrayDeque<>();
+        private long nextAllowed = Long.MIN_VALUE;
+        private int inFlight = 0;
+        // whether the host is in the queue of hosts with parked urls
+        private boolean queued = false;
+
+        private Host(String name, AdaptiveLimit limit) {
+            this.name = name;
+            this.limit = limit;
+        }
+
+        private boolean isFull() {
+            return limit != null && inFlight >= limit.limit();
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.exceptions.PageTooLargeException;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches pages over connections that are kept alive and reused, rather than set up anew for each page.
+ * <p>
+ * Built on {@link HttpURLConnection}, whose connections go back to the JVM wide keep-alive cache once the
+ * response has been read to the end. The cache keeps up to 5 idle connections per host, which can be changed
+ * with the {@code http.maxConnections} system property. The number of connections open to a host at the same
+ * time can be capped.
+ * <p>
+ * Fails the way {@link org.jsoup.Jsoup#connect(String)} does: with a {@link HttpStatusException} for an error
+ * status, and with an {@link UnsupportedMimeTypeException} for content that is not text, html or xml. Such
+ * content is told by the Content-Type header, before the body is downloaded: the download can be aborted, and
+ * a HEAD request can be sent first so the body is never asked for. The bytes thus not downloaded are counted.
+ * <p>
+ * The size of a page can be capped. The cap is enforced as the body is read, so a page that is too large is
+ * never held in memory: the download is aborted, and the page either fails with a {@link PageTooLargeException},
+ * or is cut short and marked as {@link FetchResponse#isTruncated() truncated}.
+ * <p>
+ * With a {@link DnsCache}, pages of hosts lately found not to exist fail without a lookup. With
+ * {@link AdaptiveTimeouts}, the time outs of each request are those of its host, which are told how long the
+ * connection and the response headers took.
+ * <p>
+ * Redirects are followed by hand, as {@link HttpURLConnection} does not follow those to another scheme, up to
+ * {@link #MAX_REDIRECTS} of them. Each url redirected to is checked, and timed out, as the url first asked for.
+ * Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class HttpFetcher {
+
+    private static final Pattern CHARSET = Pattern.compile("(?i)\\bcharset=\\s*\"?([^\\s;\"]*)");
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // bodies up to this size are read to the end rather than aborted, as the connection can then be reused
+    private static final int MAX_DRAINED = 8 * 1024;
+    // the most the buffer of a body is sized to up front, by its Content-Length
+    private static final int MAX_PRESIZED = 64 * 1024;
+    // as many as Jsoup follows
+    static final int MAX_REDIRECTS = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(HttpFetcher.class);
+
+    private final int timeout;
+    private final int maxConnectionsPerHost;
+    private final boolean headProbe;
+    private final boolean abortUnsupported;
+    private final int maxPageSize;
+    private final boolean truncateLargePages;
+    private final Supplier<String> userAgents;
+    private final Supplier<String> referrals;
+    private final DnsCache dns;
+    private final AdaptiveTimeouts timeouts;
+    private final ConcurrentHashMap<String, Semaphore> connections = new ConcurrentHashMap<>();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param options how pages are fetched
+     */
+    HttpFetcher(Options options) {
+        this.timeout = options.timeout;
+        this.maxConnectionsPerHost = options.maxConnectionsPerHost;
+        this.headProbe = options.headProbe;
+        this.abortUnsupported = options.abortUnsupported;
+        this.maxPageSize = options.maxPageSize;
+        this.truncateLargePages = options.truncateLargePages;
+        this.userAgents = options.userAgents;
+        this.referrals = options.referrals;
+        this.dns = options.dns;
+        this.timeouts = options.timeouts;
+    }
+
+    /**
+     * Fetches the page at the given url, following redirects
+     *
+     * @param url the url to fetch
+     * @return the page fetched
+     * @throws IOException if the page could not be fetched
+     */
+    FetchResponse fetch(String url) throws IOException {
+        return fetch(url, null);
+    }
+
+    /**
+     * Fetches the page at the given url, following redirects. With validators, the page is only sent back if it
+     * has changed since, otherwise the response is {@link FetchResponse#isNotModified() not modified}
+     *
+     * @param url        the url to fetch
+     * @param validators what is known of the page from an earlier crawl, or null
+     * @return the page fetched
+     * @throws IOException if the page could not be fetched
+     */
+    FetchResponse fetch(String url, RecrawlCache.Entry validators) throws IOException {
+        return request(url, () -> doFetch(url, validators));
+    }
+
+    /**
+     * Fetches the content at the given url, following redirects, and hands it to the given reader as it is
+     * downloaded, rather than once it is all in memory. The content type is not checked, and the size of the
+     * content not capped
+     *
+     * @param url    the url to fetch
+     * @param reader reads the content, inflated if it was sent compressed
+     * @throws IOException if the content could not be fetched, or read
+     */
+    void stream(String url, BodyReader reader) throws IOException {
+        request(url, () -> {
+            doStream(url, reader);
+            return null;
+        });
+    }
+
+    /**
+     * Makes a request to the host of the given url, once a connection to it can be opened
+     */
+    private <T> T request(String url, Request<T> request) throws IOException {
+        String host = HostScheduler.hostOf(url);
+        if (dns == null) {
+            return requestWithinCap(url, host, request);
+        }
+        dns.check(host);
+        try {
+            return requestWithinCap(url, host, request);
+        } catch (UnknownHostException e) {
+            dns.notFound(host);
+            throw e;
+        }
+    }
+
+    private <T> T requestWithinCap(String url, String host, Request<T> request) throws IOException {
+        if (maxConnectionsPerHost < 0) {
+            return request.send();
+        }
+        Semaphore permits = connections.computeIfAbsent(host, key -> new Semaphore(maxConnectionsPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + url);
+        }
+        try {
+            return request.send();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void doStream(String url, BodyReader reader) throws IOException {
+        HttpURLConnection connection = connect(checked(url), userAgents.get(), referrals.get(), null);
+        int status = connection.getResponseCode();
+        if (status < 200 || status >= 300) {
+            close(connection.getErrorStream());
+            throw new HttpStatusException("HTTP error fetching URL", status, url);
+        }
+        InputStream in = connection.getInputStream();
+        try {
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            reader.read(in);
+            logger.info("Fetched {}", url);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static URL checked(String url) throws MalformedURLException {
+        URL address = new URL(url);
+        if (!"http".equals(address.getProtocol()) && !"https".equals(address.getProtocol())) {
+            throw new MalformedURLException("Only http & https protocols supported");
+        }
+        return address;
+    }
+
+    private FetchResponse doFetch(String url, RecrawlCache.Entry validators) throws IOException {
+        URL address = checked(url);
+        String userAgent = userAgents.get();
+        String referral = referrals.get();
+        long before = System.currentTimeMillis();
+        if (headProbe) {
+            probe(address, userAgent, referral);
+        }
+        // the connection is never disconnected, so it can be reused once the response is read or closed
+        HttpURLConnection connection = connect(address, userAgent, referral, validators);
+        int status = connection.getResponseCode();
+        if ((status < 200 || status >= 300) && status != HttpURLConnection.HTTP_NOT_MODIFIED) {
+            close(connection.getErrorStream());
+            throw new HttpStatusException("HTTP error fetching URL", status, url);
+        }
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            close(connection.getInputStream());
+            logger.info("Fetched {}, not modified since the last crawl", url);
+            return new FetchResponse(connection.getURL().toString(), status, connection.getContentType(), null,
+                    new byte[0], false, System.currentTimeMillis() - before, etag, lastModified);
+        }
+        String contentType = connection.getContentType();
+        if (contentType != null && !isSupported(contentType)) {
+            long length = connection.getContentLengthLong();
+            if (abortUnsupported && (length < 0 || length > MAX_DRAINED)) {
+                // closes the connection, rather than have the body read to the end before it can be reused
+                connection.disconnect();
+                bytesSaved.addAndGet(Math.max(0, length));
+            } else {
+                close(connection.getInputStream());
+            }
+            throw unsupported(contentType, url);
+        }
+        Body body = read(connection, url);
+        logger.info("Fetched {} with User Agent: {} and Referral {}", url, userAgent, referral);
+        return new FetchResponse(connection.getURL().toString(), status, contentType, charsetOf(contentType),
+                body.bytes, body.truncated, System.currentTimeMillis() - before, etag, lastModified);
+    }
+
+    /**
+     * Opens a connection to the given url and gets the response, following redirects
+     *
+     * @return the connection the response that is not a redirect was got over
+     */
+    private HttpURLConnection connect(URL address, String userAgent, String referral,
+                                      RecrawlCache.Entry validators) throws IOException {
+        URL current = address;
+        for (int redirects = 0; ; redirects++) {
+            HttpURLConnection connection = open(current, userAgent, referral);
+            if (validators != null && validators.getEtag() != null) {
+                connection.setRequestProperty("If-None-Match", validators.getEtag());
+            }
+            if (validators != null && validators.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", validators.getLastModified());
+            }
+            int status = redirects == 0
+                    ? responseCode(connection, current) : redirectedResponseCode(connection, current);
+            if (!isRedirect(status)) {
+                return connection;
+            }
+            String location = connection.getHeaderField("Location");
+            closeRedirect(connection);
+            if (location == null) {
+                throw new HttpStatusException("HTTP error fetching URL", status, address.toString());
+            }
+            if (redirects == MAX_REDIRECTS) {
+                throw new IOException("Too many redirects occurred trying to load URL " + address);
+            }
+            current = checked(new URL(current, location).toString());
+        }
+    }
+
+    private int responseCode(HttpURLConnection connection, URL address) throws IOException {
+        return timeouts == null ? connection.getResponseCode() : timedResponseCode(connection, address);
+    }
+
+    /**
+     * Gets the status of the response from a url redirected to, checking its host as that of the url first asked
+     * for is checked. A host not found is remembered as such, but is not that of the url first asked for
+     */
+    private int redirectedResponseCode(HttpURLConnection connection, URL address) throws IOException {
+        if (dns == null) {
+            return responseCode(connection, address);
+        }
+        String host = HostScheduler.hostOf(address.toString());
+        dns.check(host);
+        try {
+            return responseCode(connection, address);
+        } catch (UnknownHostException e) {
+            dns.notFound(host);
+            throw new IOException("Failed to follow redirect to " + address + ", its host is unknown", e);
+        }
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_MOVED_TEMP
+                || status == HttpURLConnection.HTTP_SEE_OTHER || status == 307 || status == 308;
+    }
+
+    /**
+     * Reads the body of a redirect to the end, so its connection can be reused
+     */
+    private void closeRedirect(HttpURLConnection connection) {
+        try {
+            close(connection.getInputStream());
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Gets the status of the response, telling the time outs of the host how long the connection and the
+     * response headers took, or that they timed out
+     */
+    private int timedResponseCode(HttpURLConnection connection, URL address) throws IOException {
+        String host = address.getHost().toLowerCase(Locale.ENGLISH);
+        long started = System.nanoTime();
+        try {
+            connection.connect();
+        } catch (SocketTimeoutException e) {
+            timeouts.connectTimedOut(host, connection.getConnectTimeout());
+            throw e;
+        }
+        long connected = System.nanoTime();
+        timeouts.connected(host, TimeUnit.NANOSECONDS.toMillis(connected - started));
+        int status;
+        try {
+            status = connection.getResponseCode();
+        } catch (SocketTimeoutException e) {
+            timeouts.readTimedOut(host, connection.getReadTimeout());
+            throw e;
+        }
+        timeouts.responded(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connected));
+        return status;
+    }
+
+    /**
+     * Asks for the headers only, and fails if they tell the content is not supported. Any other failure is left
+     * for the GET request that follows, as some servers do not answer HEAD requests
+     */
+    private void probe(URL address, String userAgent, String referral) throws IOException {
+        HttpURLConnection connection = open(address, userAgent, referral);
+        connection.setRequestMethod("HEAD");
+        int status = connection.getResponseCode();
+        String contentType = connection.getContentType();
+        close(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        if (status >= 200 && status < 300 && contentType != null && !isSupported(contentType)) {
+            bytesSaved.addAndGet(Math.max(0, connection.getContentLengthLong()));
+            throw unsupported(contentType, address.toString());
+        }
+    }
+
+    private HttpURLConnection open(URL address, String userAgent, String referral) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) address.openConnection();
+        if (timeouts == null) {
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+        } else {
+            String host = address.getHost().toLowerCase(Locale.ENGLISH);
+            connection.setConnectTimeout(timeouts.connectTimeout(host));
+            connection.setReadTimeout(timeouts.readTimeout(host));
+        }
+        // followed by hand, see connect
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("User-Agent", userAgent);
+        connection.setRequestProperty("Referer", referral);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    private static UnsupportedMimeTypeException unsupported(String contentType, String url) {
+        return new UnsupportedMimeTypeException(
+                "Unhandled content type. Must be text/*, application/xml, or application/xhtml+xml",
+                contentType, url);
+    }
+
+    /**
+     * @return the number of bytes of content not supported that were not downloaded, as far as told by the
+     * Content-Length header
+     */
+    long bytesSaved() {
+        return bytesSaved.get();
+    }
+
+    private Body read(HttpURLConnection connection, String url) throws IOException {
+        boolean gzipped = "gzip".equalsIgnoreCase(connection.getContentEncoding());
+        long length = connection.getContentLengthLong();
+        if (maxPageSize >= 0 && !truncateLargePages && !gzipped && length > maxPageSize) {
+            connection.disconnect();
+            throw new PageTooLargeException(url, maxPageSize);
+        }
+        int limit = maxPageSize < 0 ? Integer.MAX_VALUE : maxPageSize;
+        InputStream in = connection.getInputStream();
+        boolean aborted = false;
+        try {
+            if (gzipped) {
+                in = new GZIPInputStream(in);
+            }
+            // the content length is only a hint, sent by the server: the buffer is sized by it up to a small bound,
+            // and grows as the body is read
+            ByteArrayOutputStream body = new ByteArrayOutputStream(
+                    (int) Math.max(32, Math.min(length, Math.min(limit, MAX_PRESIZED))));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (read > limit - body.size()) {
+                    // the rest of the page is never downloaded
+                    aborted = true;
+                    connection.disconnect();
+                    if (!truncateLargePages) {
+                        throw new PageTooLargeException(url, maxPageSize);
+                    }
+                    body.write(buffer, 0, limit - body.size());
+                    return new Body(body.toByteArray(), true);
+                }
+                body.write(buffer, 0, read);
+            }
+            return new Body(body.toByteArray(), false);
+        } finally {
+            if (aborted) {
+                close(in);
+            } else {
+                in.close();
+            }
+        }
+    }
+
+    private void close(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close response", e);
+        }
+    }
+
+    private static boolean isSupported(String contentType) {
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        return type.startsWith("text/") || type.startsWith("application/xml")
+                || type.startsWith("application/xhtml+xml");
+    }
+
+    static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        String charset = matcher.group(1).toUpperCase(Locale.ENGLISH);
+        try {
+            // an unknown charset is left for the parser to detect
+            return Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    private static class Body {
+        private final byte[] bytes;
+        private final boolean truncated;
+
+        private Body(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Reads the content of a response as it is downloaded
+     */
+    @FunctionalInterface
+    interface BodyReader {
+        void read(InputStream body) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Request<T> {
+        T send() throws IOException;
+    }
+
+    /**
+     * How an {@link HttpFetcher} fetches pages. The time out and limits default to those of {@link Webmuncher}
+     */
+    static class Options {
+        // the connect and read time out, in milliseconds, unless adapted to the host
+        private int timeout = 1000;
+        // the number of connections open to a host at the same time, or -1 for no limit
+        private int maxConnectionsPerHost = -1;
+        // true to send a HEAD request first, to check the content type
+        private boolean headProbe = false;
+        // true to abort the download of content that is not supported, rather than read it to the end so the
+        // connection can be reused
+        private boolean abortUnsupported = true;
+        // the size in bytes a page can be, once inflated, or -1 for no limit
+        private int maxPageSize = -1;
+        // true to cut short pages that are too large, rather than fail them
+        private boolean truncateLargePages = false;
+        // give the user agent and the referrer to send with each request
+        private Supplier<String> userAgents = () -> "webmuncher";
+        private Supplier<String> referrals = () -> "www.google.com";
+        // remembers the hosts that could not be found, or null
+        private DnsCache dns;
+        // gives the time outs of each host, or null for the time out given to apply
+        private AdaptiveTimeouts timeouts;
+
+        Options withTimeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        Options withMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        Options withHeadProbe(boolean headProbe) {
+            this.headProbe = headProbe;
+            return this;
+        }
+
+        Options withAbortUnsupported(boolean abortUnsupported) {
+            this.abortUnsupported = abortUnsupported;
+            return this;
+        }
+
+        Options withMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+            return this;
+        }
+
+        Options withTruncateLargePages(boolean truncateLargePages) {
+            this.truncateLargePages = truncateLargePages;
+            return this;
+        }
+
+        Options withUserAgents(Supplier<String> userAgents) {
+            this.userAgents = userAgents;
+            return this;
+        }
+
+        Options withReferrals(Supplier<String> referrals) {
+            this.referrals = referrals;
+            return this;
+        }
+
+        Options withDns(DnsCache dns) {
+            this.dns = dns;
+            return this;
+        }
+
+        Options withTimeouts(AdaptiveTimeouts timeouts) {
+            this.timeouts = timeouts;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link UrlQueue} held in memory
+ *
+ * @author Dadepo Aderemi.
+ */
+class InMemoryUrlQueue implements UrlQueue {
+
+    private final Deque<Url> queue = new ArrayDeque<>();
+
+    @Override
+    public void add(Url url) {
+        queue.addLast(url);
+    }
+
+    @Override
+    public Url poll() {
+        return queue.pollFirst();
+    }
+
+    @Override
+    public long size() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        queue.clear();
+    }
+}
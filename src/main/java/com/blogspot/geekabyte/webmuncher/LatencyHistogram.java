@@ -0,0 +1,99 @@
+package com.blogspot.geekabyte.webmuncher;
+
+/**
+ * Counts latencies in buckets whose bounds grow by a quarter from one to the next, from a millisecond up to
+ * ten minutes, so a percentile can be read off it at any time in constant memory, to within a quarter.
+ * <p>
+ * Once the histogram has counted as many latencies as its window, all the counts are halved, so the latencies
+ * of the last few windows are the ones that count, and the histogram follows changes in latency. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class LatencyHistogram {
+
+    // the upper bound of each bucket, in milliseconds
+    private static final long[] BOUNDS = bounds();
+
+    private final long[] counts = new long[BOUNDS.length];
+    private final int window;
+    private long count = 0;
+    private long sinceHalved = 0;
+
+    /**
+     * @param window the number of latencies counted after which the counts are halved
+     */
+    LatencyHistogram(int window) {
+        this.window = window;
+    }
+
+    private static long[] bounds() {
+        int size = 0;
+        for (double bound = 1; bound < 600_000; bound *= 1.25) {
+            size++;
+        }
+        long[] bounds = new long[size + 1];
+        double bound = 1;
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = (long) Math.ceil(bound);
+            bound *= 1.25;
+        }
+        return bounds;
+    }
+
+    /**
+     * @param millis a latency, in milliseconds
+     */
+    synchronized void record(long millis) {
+        counts[bucketOf(millis)]++;
+        count++;
+        if (++sinceHalved >= window) {
+            sinceHalved = 0;
+            count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] /= 2;
+                count += counts[i];
+            }
+        }
+    }
+
+    private static int bucketOf(long millis) {
+        int low = 0;
+        int high = BOUNDS.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (BOUNDS[middle] < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param quantile the quantile, between 0 and 1, as in 0.99 for the 99th percentile
+     * @return the latency the given share of latencies are no longer than, rounded up to the bound of its
+     * bucket, in milliseconds, or -1 if no latencies are counted
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return BOUNDS[i];
+            }
+        }
+        return BOUNDS[BOUNDS.length - 1];
+    }
+
+    /**
+     * @return the number of latencies counted, less those halved away
+     */
+    synchronized long count() {
+        return count;
+    }
+}
@@ -0,0 +1,315 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.jsoup.parser.Parser;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the links of a page by scanning its bytes for the {@code href} of {@code <a>} and {@code <base>} tags,
+ * without parsing the page into a document.
+ * <p>
+ * The scan is a tokenizer cut down to what matters for finding tags: comments, doctypes and end tags are
+ * skipped, as is the content of {@code <script>}, {@code <style>}, {@code <textarea>} and {@code <title>}
+ * elements, which is text however much it looks like tags. Attribute values may be quoted or not, and have
+ * their character references decoded. The links are resolved, once the page is scanned, against the first
+ * {@code <base href>} if there is one, or else the url of the page, the way {@link org.jsoup.nodes.Node#absUrl}
+ * resolves them. The bytes are scanned in place, and only the hrefs found are copied out of them.
+ * <p>
+ * Only pages in a charset that encodes ASCII as ASCII can be scanned, see {@link #canScan(byte[], String)}.
+ * Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class LinkScanner {
+
+    private static final byte[] A = ascii("a");
+    private static final byte[] BASE = ascii("base");
+    private static final byte[] HREF = ascii("href");
+    private static final byte[][] RAW_TEXT = {ascii("script"), ascii("style"), ascii("textarea"), ascii("title")};
+
+    private LinkScanner() {
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param body    the body of a page
+     * @param charset the charset of the page, as given in its content type, or null if none is
+     * @return true if the page is in a charset that can be scanned: one that is known, and encodes ASCII as ASCII
+     */
+    static boolean canScan(byte[] body, String charset) {
+        if (body.length >= 2 && ((body[0] == (byte) 0xfe && body[1] == (byte) 0xff)
+                || (body[0] == (byte) 0xff && body[1] == (byte) 0xfe))) {
+            // a byte order mark of UTF-16 or UTF-32
+            return false;
+        }
+        return charset == null || charsetOf(charset) != null;
+    }
+
+    private static Charset charsetOf(String name) {
+        try {
+            Charset charset = Charset.forName(name);
+            String canonical = charset.name().toUpperCase(Locale.ENGLISH);
+            if (!charset.canEncode() || canonical.startsWith("UTF-16") || canonical.startsWith("UTF-32")) {
+                return null;
+            }
+            return charset;
+        } catch (IllegalArgumentException e) {
+            // not a valid name, or not supported
+            return null;
+        }
+    }
+
+    /**
+     * Scans a page for its links
+     *
+     * @param body    the body of the page
+     * @param charset the charset of the page, or null to take the hrefs to be UTF-8, which covers ASCII ones
+     * @param url     the url of the page
+     * @return the absolute urls of the links, not filtered in any way
+     */
+    static Set<String> scan(byte[] body, String charset, String url) {
+        Charset encoding = charset == null ? null : charsetOf(charset);
+        if (encoding == null) {
+            encoding = StandardCharsets.UTF_8;
+        }
+        List<String> hrefs = new ArrayList<>();
+        String base = null;
+        int length = body.length;
+        int i = 0;
+        while (i < length) {
+            int open = indexOf(body, (byte) '<', i);
+            if (open < 0 || open + 1 >= length) {
+                break;
+            }
+            i = open + 1;
+            byte next = body[i];
+            if (next == '!') {
+                i = startsWith(body, i, "!--") ? skipPast(body, i + 3, "-->") : skipPast(body, i, ">");
+                continue;
+            }
+            if (next == '/' || next == '?') {
+                i = skipPast(body, i, ">");
+                continue;
+            }
+            if (!isLetter(next)) {
+                // a lone <, as text
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < length && !isSpace(body[i]) && body[i] != '/' && body[i] != '>') {
+                i++;
+            }
+            int nameEnd = i;
+            boolean isA = equalsIgnoreCase(body, nameStart, nameEnd, A);
+            boolean isBase = !isA && equalsIgnoreCase(body, nameStart, nameEnd, BASE);
+            String href = null;
+            boolean closed = false;
+            boolean selfClosing = false;
+            // the attributes
+            while (i < length) {
+                byte c = body[i];
+                if (c == '>') {
+                    closed = true;
+                    i++;
+                    break;
+                }
+                if (isSpace(c) || c == '/') {
+                    selfClosing = c == '/';
+                    i++;
+                    continue;
+                }
+                selfClosing = false;
+                int attributeStart = i;
+                while (i < length && !isSpace(body[i]) && body[i] != '=' && body[i] != '>' && body[i] != '/') {
+                    i++;
+                }
+                int attributeEnd = i;
+                while (i < length && isSpace(body[i])) {
+                    i++;
+                }
+                if (i >= length || body[i] != '=') {
+                    // an attribute without a value
+                    continue;
+                }
+                i++;
+                while (i < length && isSpace(body[i])) {
+                    i++;
+                }
+                if (i >= length) {
+                    break;
+                }
+                int valueStart;
+                int valueEnd;
+                byte quote = body[i];
+                if (quote == '"' || quote == '\'') {
+                    valueStart = i + 1;
+                    valueEnd = indexOf(body, quote, valueStart);
+                    if (valueEnd < 0) {
+                        i = length;
+                        break;
+                    }
+                    i = valueEnd + 1;
+                } else {
+                    valueStart = i;
+                    while (i < length && !isSpace(body[i]) && body[i] != '>') {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+                // the last of repeated attributes is kept, as when parsing
+                if ((isA || isBase) && equalsIgnoreCase(body, attributeStart, attributeEnd, HREF)) {
+                    href = decode(body, valueStart, valueEnd, encoding);
+                }
+            }
+            if (!closed) {
+                // cut short at the end of the page
+                break;
+            }
+            if (isA && href != null) {
+                hrefs.add(href);
+            } else if (isBase && href != null && base == null) {
+                base = resolve(url, href);
+            } else if (!selfClosing) {
+                for (byte[] rawText : RAW_TEXT) {
+                    if (equalsIgnoreCase(body, nameStart, nameEnd, rawText)) {
+                        i = skipRawText(body, i, rawText);
+                        break;
+                    }
+                }
+            }
+        }
+
+        URL resolveAgainst = urlOf(base == null || base.isEmpty() ? url : base);
+        Set<String> links = new HashSet<>();
+        for (String href : hrefs) {
+            links.add(resolve(resolveAgainst, href));
+        }
+        return links;
+    }
+
+    private static String decode(byte[] body, int start, int end, Charset encoding) {
+        String value = new String(body, start, end - start, encoding).trim();
+        return value.indexOf('&') < 0 ? value : Parser.unescapeEntities(value, true);
+    }
+
+    /**
+     * Resolves the given href against the given url, as {@link org.jsoup.nodes.Node#absUrl} does
+     *
+     * @return the absolute url, or an empty string if it can not be resolved
+     */
+    static String resolve(String url, String href) {
+        return resolve(urlOf(url), href);
+    }
+
+    private static String resolve(URL base, String href) {
+        try {
+            if (base == null) {
+                return new URL(href).toExternalForm();
+            }
+            if (href.startsWith("?")) {
+                href = base.getPath() + href;
+            }
+            return new URL(base, href).toExternalForm();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    private static URL urlOf(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Skips the text of a raw text element, to past its end tag
+     */
+    private static int skipRawText(byte[] body, int from, byte[] name) {
+        int i = from;
+        while (true) {
+            int open = indexOf(body, (byte) '<', i);
+            if (open < 0 || open + 2 + name.length > body.length) {
+                return body.length;
+            }
+            i = open + 1;
+            if (body[i] == '/' && equalsIgnoreCase(body, i + 1, i + 1 + name.length, name)) {
+                int after = i + 1 + name.length;
+                if (after == body.length || isSpace(body[after]) || body[after] == '>' || body[after] == '/') {
+                    return skipPast(body, after, ">");
+                }
+            }
+        }
+    }
+
+    private static int indexOf(byte[] body, byte b, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] body, int from, String prefix) {
+        if (from + prefix.length() > body.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (body[from + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index just past the next occurrence of the given text, or the length of the body if there is
+     * none
+     */
+    private static int skipPast(byte[] body, int from, String text) {
+        for (int i = from; i < body.length; i++) {
+            if (startsWith(body, i, text)) {
+                return i + text.length();
+            }
+        }
+        return body.length;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] body, int start, int end, byte[] lowerCase) {
+        if (end - start != lowerCase.length || end > body.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            byte b = body[start + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+}
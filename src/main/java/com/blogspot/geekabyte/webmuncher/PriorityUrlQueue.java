@@ -0,0 +1,67 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.UrlScorer;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@link UrlQueue} held in memory, that hands out the URL with the highest score first. URLs with the same score
+ * are handed out the shallowest first, then in the order they were added.
+ *
+ * @author Dadepo Aderemi.
+ */
+class PriorityUrlQueue implements UrlQueue {
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final UrlScorer scorer;
+    private long added = 0;
+
+    /**
+     * @param scorer scores the urls added
+     */
+    PriorityUrlQueue(UrlScorer scorer) {
+        this.scorer = scorer;
+    }
+
+    @Override
+    public void add(Url url) {
+        queue.add(new Entry(url, scorer.score(url.getUrl(), url.getDepth()), added++));
+    }
+
+    @Override
+    public Url poll() {
+        Entry entry = queue.poll();
+        return entry == null ? null : entry.url;
+    }
+
+    @Override
+    public long size() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        queue.clear();
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final Url url;
+        private final double score;
+        private final long order;
+
+        private Entry(Url url, double score, long order) {
+            this.url = url;
+            this.score = score;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int compared = Double.compare(other.score, score);
+            if (compared == 0) {
+                compared = Integer.compare(url.getDepth(), other.url.getDepth());
+            }
+            return compared == 0 ? Long.compare(order, other.order) : compared;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, for each page crawled, what is needed to tell if it has changed since: the ETag and Last-Modified
+ * the server sent with it, a hash of its body, and when it was fetched. Also remembers the links found on the
+ * page, so a crawl can follow the links of a page that has not changed, without fetching and parsing it again.
+ * <p>
+ * The cache is read from a file when a crawl starts, and written back to it when the crawl ends. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class RecrawlCache {
+
+    private static final int MAGIC_V1 = 0x574d5231;
+    // adds the time each page was fetched
+    private static final int MAGIC_V2 = 0x574d5232;
+    // writes strings as the length of their UTF-8 bytes followed by the bytes, rather than as modified UTF-8,
+    // which can not hold more than 64KB
+    private static final int MAGIC = 0x574d5233;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private RecrawlCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the cache from the given file
+     *
+     * @param file the file the cache is kept in
+     * @return the cache, empty if the file does not exist yet
+     * @throws IOException if the file could not be read
+     */
+    static RecrawlCache load(Path file) throws IOException {
+        RecrawlCache cache = new RecrawlCache(file);
+        if (!Files.exists(file)) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != MAGIC_V2 && magic != MAGIC_V1) {
+                throw new IOException(file + " is not a recrawl cache");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = readString(in, magic);
+                String etag = readNullable(in, magic);
+                String lastModified = readNullable(in, magic);
+                long contentHash = in.readLong();
+                long fetchedAt = magic == MAGIC_V1 ? 0 : in.readLong();
+                int linkCount = in.readInt();
+                List<String> links = new ArrayList<>(linkCount);
+                for (int j = 0; j < linkCount; j++) {
+                    links.add(readString(in, magic));
+                }
+                cache.entries.put(url, new Entry(etag, lastModified, contentHash, fetchedAt, links));
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the cache to its file. The file is replaced in one go, so a crash while writing leaves the
+     * previous version in place
+     *
+     * @throws IOException if the file could not be written
+     */
+    void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                // copied, as pages may still be added while writing
+                List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> entry : snapshot) {
+                    Entry page = entry.getValue();
+                    writeString(out, entry.getKey());
+                    writeNullable(out, page.etag);
+                    writeNullable(out, page.lastModified);
+                    out.writeLong(page.contentHash);
+                    out.writeLong(page.fetchedAt);
+                    out.writeInt(page.links.size());
+                    for (String link : page.links) {
+                        writeString(out, link);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param url the url of a page
+     * @return what is known of the page, or null if it has not been crawled before
+     */
+    Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Remembers a page crawled, as fetched now
+     *
+     * @param url          the url of the page
+     * @param etag         the ETag sent with the page, or null
+     * @param lastModified the Last-Modified sent with the page, or null
+     * @param contentHash  the hash of the body of the page, see {@link #hash(byte[])}
+     * @param links        the links found on the page
+     */
+    void put(String url, String etag, String lastModified, long contentHash, Collection<String> links) {
+        entries.put(url, new Entry(etag, lastModified, contentHash, System.currentTimeMillis(),
+                new ArrayList<>(links)));
+    }
+
+    /**
+     * Forgets a page, for instance because it is gone
+     *
+     * @param url the url of the page
+     */
+    void remove(String url) {
+        entries.remove(url);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param body the body of a page
+     * @return the 64-bit FNV-1a hash of the body
+     */
+    static long hash(byte[] body) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : body) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String readNullable(DataInputStream in, int magic) throws IOException {
+        return in.readBoolean() ? readString(in, magic) : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readString(DataInputStream in, int magic) throws IOException {
+        if (magic != MAGIC) {
+            return in.readUTF();
+        }
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length " + length + " of a string in the recrawl cache");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final long contentHash;
+        private final long fetchedAt;
+        private final List<String> links;
+
+        Entry(String etag, String lastModified, long contentHash, long fetchedAt, List<String> links) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.fetchedAt = fetchedAt;
+            this.links = Collections.unmodifiableList(links);
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        long getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * @return when the page was last fetched, or found unchanged, in milliseconds since the epoch
+         */
+        long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        List<String> getLinks() {
+            return links;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the URLs whose fetch failed in a way that may not happen again, such as a time out, until they are
+ * due to be retried.
+ * <p>
+ * The wait before a retry doubles with each attempt, starting from the configured back off and up to
+ * {@link #MAX_BACK_OFF}, and is jittered to between half and all of that, so URLs that failed together are not
+ * all retried together. A URL is retried at most the configured number of times.
+ * <p>
+ * Times are in nanoseconds as given by {@link System#nanoTime()}. Not thread safe, {@link CrawlJob} guards
+ * access to it.
+ *
+ * @author Dadepo Aderemi.
+ */
+class RetryQueue {
+
+    static final long MAX_BACK_OFF = TimeUnit.MINUTES.toNanos(5);
+
+    private final PriorityQueue<Retry> retries = new PriorityQueue<>(Comparator.comparingLong(r -> r.due));
+    private final int maxRetry;
+    private final long backOff;
+
+    /**
+     * @param maxRetry the number of times a url is retried
+     * @param backOff  the wait before the first retry, in nanoseconds
+     */
+    RetryQueue(int maxRetry, long backOff) {
+        this.maxRetry = maxRetry;
+        this.backOff = backOff;
+    }
+
+    /**
+     * Schedules a retry of the given url, unless it has been retried too many times already
+     *
+     * @param url the url that failed
+     * @param now the current time
+     * @return the wait before the url is retried, or -1 if it will not be retried
+     */
+    long retry(Url url, long now) {
+        if (url.getAttempts() >= maxRetry) {
+            return -1;
+        }
+        long wait = backOff(url.getAttempts());
+        retries.add(new Retry(url.retried(), now + wait));
+        return wait;
+    }
+
+    /**
+     * Puts back a url handed out by {@link #pollDue(long)} that could not be fetched yet
+     *
+     * @param url the url to put back
+     * @param due when the url is to be handed out again
+     */
+    void postpone(Url url, long due) {
+        retries.add(new Retry(url, due));
+    }
+
+    /**
+     * @param now the current time
+     * @return a url due to be retried, or null if there is none
+     */
+    Url pollDue(long now) {
+        Retry retry = retries.peek();
+        if (retry == null || retry.due > now) {
+            return null;
+        }
+        return retries.poll().url;
+    }
+
+    /**
+     * @param now the current time
+     * @return nanoseconds until a url is due to be retried, or -1 if there are no urls to retry
+     */
+    long nanosUntilDue(long now) {
+        Retry retry = retries.peek();
+        if (retry == null) {
+            return -1;
+        }
+        return Math.max(0, retry.due - now);
+    }
+
+    boolean isEmpty() {
+        return retries.isEmpty();
+    }
+
+    int size() {
+        return retries.size();
+    }
+
+    long backOff(int attempts) {
+        // shifting any further would overflow
+        boolean overflows = attempts >= Long.numberOfLeadingZeros(backOff) - 1;
+        long wait = overflows ? MAX_BACK_OFF : Math.min(MAX_BACK_OFF, backOff << attempts);
+        return wait / 2 + ThreadLocalRandom.current().nextLong(wait / 2 + 1);
+    }
+
+    private static class Retry {
+        private final Url url;
+        private final long due;
+
+        private Retry(Url url, long due) {
+            this.url = url;
+            this.due = due;
+        }
+    }
+}
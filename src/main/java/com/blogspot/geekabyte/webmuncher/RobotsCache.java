@@ -0,0 +1,161 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the robots.txt of each site crawled, once, and keeps its rules for a while.
+ * <p>
+ * A site is told by its scheme, host and port. The first URL checked for a site has its robots.txt fetched, while
+ * other threads checking the same site wait for it rather than fetch it too. As RFC 9309 sets out, a robots.txt
+ * that is missing, or otherwise fails with a 4xx status, allows everything, while one that fails with a 5xx
+ * status disallows everything, until it is fetched again a minute later. A robots.txt that could not be fetched
+ * at all allows everything, so the pages of the site fail the way they would have without it. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class RobotsCache {
+
+    private static final long ERROR_TTL = TimeUnit.MINUTES.toNanos(1);
+
+    private final Logger logger = LoggerFactory.getLogger(RobotsCache.class);
+
+    private final HttpFetcher fetcher;
+    private final String userAgent;
+    private final long ttl;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    // the crawl delay of each host, looked up on each request to it, so kept apart from the sites
+    private final Map<String, Long> crawlDelays = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetcher   fetches the robots.txt files
+     * @param userAgent the product token of the crawler the rules are for
+     * @param ttl       how long the rules of a site are kept before its robots.txt is fetched again, in nanoseconds
+     */
+    RobotsCache(HttpFetcher fetcher, String userAgent, long ttl) {
+        this.fetcher = fetcher;
+        this.userAgent = userAgent;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param url a url
+     * @return true if the robots.txt of the site allows the url to be crawled
+     */
+    boolean isAllowed(String url) {
+        URL address;
+        try {
+            address = new URL(url);
+        } catch (MalformedURLException e) {
+            // left for the fetch to fail
+            return true;
+        }
+        String path = address.getFile().isEmpty() ? "/" : address.getFile();
+        return rulesOf(address).isAllowed(path);
+    }
+
+    /**
+     * @param url a url
+     * @return the urls of the sitemaps listed in the robots.txt of the site of the url
+     * @throws MalformedURLException if the url is not valid
+     */
+    List<String> sitemaps(String url) throws MalformedURLException {
+        return rulesOf(new URL(url)).getSitemaps();
+    }
+
+    /**
+     * @param host a host
+     * @return the crawl delay asked for by the robots.txt of the host, in nanoseconds, or -1 if none is, or the
+     * robots.txt has not been fetched yet
+     */
+    long crawlDelay(String host) {
+        return crawlDelays.getOrDefault(host, -1L);
+    }
+
+    private RobotsTxt rulesOf(URL address) {
+        String site = address.getProtocol() + "://" + address.getAuthority();
+        while (true) {
+            Site known = sites.get(site);
+            if (known != null && (!known.rules.isDone() || known.expires - System.nanoTime() > 0)) {
+                // waits for it, if another thread is fetching it
+                return known.rules.join();
+            }
+            Site fetching = new Site();
+            boolean claimed = known == null
+                    ? sites.putIfAbsent(site, fetching) == null
+                    : sites.replace(site, known, fetching);
+            if (!claimed) {
+                // another thread got to fetch it first
+                continue;
+            }
+            RobotsTxt rules;
+            try {
+                rules = fetch(site);
+            } catch (RuntimeException | Error e) {
+                sites.remove(site, fetching);
+                fetching.rules.completeExceptionally(e);
+                throw e;
+            }
+            if (rules == null) {
+                rules = RobotsTxt.DISALLOW_ALL;
+                fetching.expires = System.nanoTime() + ERROR_TTL;
+            } else {
+                fetching.expires = System.nanoTime() + ttl;
+            }
+            // keyed as the host scheduler looks it up
+            String host = HostScheduler.hostOf(address.toString());
+            if (rules.getCrawlDelay() >= 0) {
+                crawlDelays.put(host, rules.getCrawlDelay());
+            } else {
+                crawlDelays.remove(host);
+            }
+            fetching.rules.complete(rules);
+            return rules;
+        }
+    }
+
+    /**
+     * @return the rules of the site, or null if its server failed
+     */
+    private RobotsTxt fetch(String site) {
+        String url = site + "/robots.txt";
+        try {
+            FetchResponse response = fetcher.fetch(url);
+            Charset charset = response.getCharset() == null
+                    ? StandardCharsets.UTF_8 : Charset.forName(response.getCharset());
+            logger.info("Fetched {}, the crawl keeps to it", url);
+            return RobotsTxt.parse(new String(response.getBody(), charset), userAgent);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() >= 500) {
+                logger.warn("Failed to fetch {} with status {}. The site is not crawled for now", url,
+                        e.getStatusCode());
+                return null;
+            }
+            return RobotsTxt.ALLOW_ALL;
+        } catch (UnsupportedMimeTypeException e) {
+            return RobotsTxt.ALLOW_ALL;
+        } catch (IOException e) {
+            logger.warn("Failed to fetch {}. With error message: {}", url, e.getMessage());
+            return RobotsTxt.ALLOW_ALL;
+        }
+    }
+
+    private static class Site {
+        private final CompletableFuture<RobotsTxt> rules = new CompletableFuture<>();
+        // set before the rules are completed
+        private volatile long expires;
+    }
+}
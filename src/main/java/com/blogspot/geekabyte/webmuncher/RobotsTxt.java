@@ -0,0 +1,194 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of a robots.txt file that apply to a user agent, compiled to be checked against each URL found.
+ * <p>
+ * Parsed as set out by RFC 9309: the groups naming the user agent apply, or failing those the groups for
+ * {@code *}. Of the Allow and Disallow rules matching a path, the longest wins, Allow winning a tie. Rules may
+ * hold {@code *} wildcards and end with a {@code $} anchor; those that do not, the most common, are checked
+ * with {@link String#startsWith(String)}. The Crawl-delay of the groups is kept too, as are the Sitemap lines,
+ * which apply whatever the group. Immutable.
+ *
+ * @author Dadepo Aderemi.
+ */
+class RobotsTxt {
+
+    static final RobotsTxt ALLOW_ALL = new RobotsTxt(Collections.emptyList(), -1, Collections.emptyList());
+    static final RobotsTxt DISALLOW_ALL =
+            new RobotsTxt(Collections.singletonList(new Rule("/", false)), -1, Collections.emptyList());
+
+    // checked longest first, so the first rule to match is the one that wins
+    private final List<Rule> rules;
+    private final long crawlDelay;
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, long crawlDelay, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Parses a robots.txt file
+     *
+     * @param content   the content of the file
+     * @param userAgent the product token of the crawler, as in {@code webmuncher}
+     * @return the rules that apply to the user agent
+     */
+    static RobotsTxt parse(String content, String userAgent) {
+        String token = userAgent.toLowerCase(Locale.ENGLISH);
+        List<Rule> named = new ArrayList<>();
+        List<Rule> any = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        long namedDelay = -1;
+        long anyDelay = -1;
+        boolean anyNamed = false;
+        boolean inNamed = false;
+        boolean inAny = false;
+        boolean inRules = false;
+
+        for (String line : content.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+            String value = line.substring(colon + 1).trim();
+            if ("sitemap".equals(key)) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+                continue;
+            }
+            if ("user-agent".equals(key)) {
+                if (inRules) {
+                    // the lines before were the rules of the group, this starts another
+                    inNamed = false;
+                    inAny = false;
+                    inRules = false;
+                }
+                String agent = value.toLowerCase(Locale.ENGLISH);
+                if ("*".equals(agent)) {
+                    inAny = true;
+                } else if (!agent.isEmpty() && token.contains(agent)) {
+                    inNamed = true;
+                    anyNamed = true;
+                }
+                continue;
+            }
+            if ("allow".equals(key) || "disallow".equals(key)) {
+                inRules = true;
+                // an empty Disallow allows everything, which is the same as no rule at all
+                if (!value.isEmpty()) {
+                    Rule rule = new Rule(value, "allow".equals(key));
+                    if (inNamed) {
+                        named.add(rule);
+                    }
+                    if (inAny) {
+                        any.add(rule);
+                    }
+                }
+            } else if ("crawl-delay".equals(key)) {
+                inRules = true;
+                long delay = parseDelay(value);
+                if (inNamed) {
+                    namedDelay = Math.max(namedDelay, delay);
+                }
+                if (inAny) {
+                    anyDelay = Math.max(anyDelay, delay);
+                }
+            }
+        }
+
+        List<Rule> rules = anyNamed ? named : any;
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.length).reversed()
+                .thenComparing(rule -> !rule.allow));
+        return new RobotsTxt(rules, anyNamed ? namedDelay : anyDelay, Collections.unmodifiableList(sitemaps));
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 ? (long) (seconds * TimeUnit.SECONDS.toNanos(1)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param path the path of a url, with its query if it has one
+     * @return true if the path can be crawled
+     */
+    boolean isAllowed(String path) {
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the delay asked for between requests, in nanoseconds, or -1 if none is
+     */
+    long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    /**
+     * @return the urls of the sitemaps listed
+     */
+    List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static class Rule {
+        private final String prefix;
+        private final Pattern pattern;
+        private final int length;
+        private final boolean allow;
+
+        private Rule(String path, boolean allow) {
+            this.allow = allow;
+            this.length = path.length();
+            boolean anchored = path.endsWith("$");
+            if (!anchored && path.indexOf('*') < 0) {
+                this.prefix = path;
+                this.pattern = null;
+                return;
+            }
+            StringBuilder regex = new StringBuilder();
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            String[] literals = body.split("\\*", -1);
+            for (int i = 0; i < literals.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!literals[i].isEmpty()) {
+                    regex.append(Pattern.quote(literals[i]));
+                }
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            this.prefix = null;
+            this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+
+        private boolean matches(String path) {
+            return prefix != null ? path.startsWith(prefix) : pattern.matcher(path).lookingAt();
+        }
+    }
+}
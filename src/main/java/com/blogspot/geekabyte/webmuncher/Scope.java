@@ -0,0 +1,94 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which hosts the links found are followed to, as against the host of the URL the crawl started at. See
+ * {@link Webmuncher#setScope(Scope)}
+ *
+ * @author Dadepo Aderemi.
+ */
+public enum Scope {
+
+    /**
+     * Only the host the crawl started at
+     */
+    HOST,
+
+    /**
+     * The host the crawl started at, and its subdomains. This is the default
+     */
+    SUBDOMAINS,
+
+    /**
+     * Any host under the same registrable domain as the host the crawl started at, such as example.com for
+     * www.example.com and blog.example.com
+     */
+    DOMAIN;
+
+    // second level labels under which, with a two letter country code, domains are registered, as in co.uk
+    private static final Set<String> SECOND_LEVELS = new HashSet<>(Arrays.asList(
+            "ac", "co", "com", "edu", "gov", "go", "ltd", "ne", "net", "or", "org", "plc"));
+
+    /**
+     * @param host     the host of a link, in lower case
+     * @param seedHost the host of the URL the crawl started at, in lower case
+     * @return true if the link is in scope
+     */
+    boolean matches(String host, String seedHost) {
+        switch (this) {
+            case HOST:
+                return host.equals(seedHost);
+            case SUBDOMAINS:
+                return isUnder(host, seedHost);
+            case DOMAIN:
+                return isUnder(host, registrableDomain(seedHost));
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isUnder(String host, String domain) {
+        return host.equals(domain)
+                || (host.endsWith(domain) && host.charAt(host.length() - domain.length() - 1) == '.');
+    }
+
+    /**
+     * Works out the domain the given host is registered under. Without the public suffix list at hand, it is
+     * taken to be the last two labels of the host, or three under a second level label such as co.uk
+     *
+     * @param host a host, in lower case
+     * @return the registrable domain, or the host itself for an IP address or a host of a single label
+     */
+    static String registrableDomain(String host) {
+        if (host.indexOf(':') >= 0 || isIpv4(host)) {
+            return host;
+        }
+        int last = host.lastIndexOf('.');
+        if (last < 0) {
+            return host;
+        }
+        int secondLast = host.lastIndexOf('.', last - 1);
+        if (secondLast < 0) {
+            return host;
+        }
+        String secondLevel = host.substring(secondLast + 1, last);
+        if (host.length() - last - 1 == 2 && SECOND_LEVELS.contains(secondLevel)) {
+            int thirdLast = host.lastIndexOf('.', secondLast - 1);
+            return host.substring(thirdLast + 1);
+        }
+        return host.substring(secondLast + 1);
+    }
+
+    private static boolean isIpv4(String host) {
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
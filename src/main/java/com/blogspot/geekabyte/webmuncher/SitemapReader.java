@@ -0,0 +1,133 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads sitemaps and sitemap indexes, as set out at sitemaps.org, as they are downloaded.
+ * <p>
+ * The XML is read with a StAX parser, one element at a time, and each URL is handed on as soon as it is read,
+ * so a sitemap of any size is read in constant memory. Gzipped sitemaps, as in {@code sitemap.xml.gz}, are told
+ * by their first bytes and inflated. Elements of other namespaces, such as the {@code image:loc} of image
+ * sitemaps, are skipped. DTDs and external entities are not resolved. Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class SitemapReader {
+
+    private static final String NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Reads a sitemap, or a sitemap index
+     *
+     * @param in      the content of the sitemap, gzipped or not
+     * @param handler handed the URLs of the sitemap, or the sitemaps of the index, as they are read, until it
+     *                is stopped
+     * @throws IOException if the content could not be read, or is not XML
+     */
+    static void read(InputStream in, Handler handler) throws IOException {
+        InputStream content = new BufferedInputStream(in);
+        if (isGzipped(content)) {
+            content = new GZIPInputStream(content);
+        }
+        XMLStreamReader xml = null;
+        try {
+            xml = FACTORY.createXMLStreamReader(content);
+            String loc = null;
+            String lastmod = null;
+            while (!handler.isStopped() && xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && isSitemapElement(xml)) {
+                    switch (xml.getLocalName()) {
+                        case "url":
+                        case "sitemap":
+                            loc = null;
+                            lastmod = null;
+                            break;
+                        case "loc":
+                            loc = xml.getElementText().trim();
+                            break;
+                        case "lastmod":
+                            lastmod = xml.getElementText().trim();
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && isSitemapElement(xml) && loc != null) {
+                    if ("url".equals(xml.getLocalName())) {
+                        handler.url(loc, lastmod);
+                        loc = null;
+                    } else if ("sitemap".equals(xml.getLocalName())) {
+                        handler.sitemap(loc);
+                        loc = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read sitemap: " + e.getMessage(), e);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException e) {
+                    // the stream is closed by the caller
+                }
+            }
+        }
+    }
+
+    private static boolean isGzipped(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == 0x1f && second == 0x8b;
+    }
+
+    /**
+     * Elements without a namespace are taken to be of sitemaps too, as not every site declares it
+     */
+    private static boolean isSitemapElement(XMLStreamReader xml) {
+        String namespace = xml.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || NAMESPACE.equals(namespace);
+    }
+
+    /**
+     * Handed what is read from a sitemap
+     */
+    interface Handler {
+
+        /**
+         * @param loc     the URL of a page
+         * @param lastmod when the page was last modified, as given in the sitemap, or null
+         */
+        void url(String loc, String lastmod);
+
+        /**
+         * @param loc the URL of a sitemap, listed in a sitemap index
+         */
+        void sitemap(String loc);
+
+        /**
+         * @return true for the rest of the sitemap to be left unread
+         */
+        default boolean isStopped() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Finds the sitemaps of a site and hands out the URLs they list, as each sitemap is read.
+ * <p>
+ * The sitemaps are those listed in the robots.txt of the site, or failing those {@code /sitemap.xml}. The
+ * sitemaps listed in a sitemap index are read in turn, once each, up to {@link #MAX_SITEMAPS} of them, as long as
+ * they are in the scope of the crawl. A sitemap that could not be fetched or read is logged and left, along with
+ * the URLs it would have listed. The sitemaps are left unread as soon as the crawl stops.
+ *
+ * @author Dadepo Aderemi.
+ */
+class SitemapSeeder {
+
+    // as many as a sitemap index may list
+    static final int MAX_SITEMAPS = 50_000;
+
+    private final Logger logger = LoggerFactory.getLogger(SitemapSeeder.class);
+
+    private final HttpFetcher fetcher;
+    private final RobotsCache robots;
+    private final Predicate<String> inScope;
+    private final BooleanSupplier stopped;
+
+    /**
+     * @param fetcher fetches the sitemaps
+     * @param robots  fetches the robots.txt listing the sitemaps
+     * @param inScope whether a sitemap listed in a sitemap index is to be read
+     * @param stopped whether the crawl has stopped, and the sitemaps are to be left
+     */
+    SitemapSeeder(HttpFetcher fetcher, RobotsCache robots, Predicate<String> inScope, BooleanSupplier stopped) {
+        this.fetcher = fetcher;
+        this.robots = robots;
+        this.inScope = inScope;
+        this.stopped = stopped;
+    }
+
+    /**
+     * Reads the sitemaps of the site of the given url
+     *
+     * @param url     a url of the site
+     * @param handler handed each URL listed, as it is read
+     * @return the number of URLs listed
+     * @throws IOException if the url is not valid
+     */
+    long seed(String url, Handler handler) throws IOException {
+        URL address = new URL(url);
+        Deque<String> pending = new ArrayDeque<>(robots.sitemaps(url));
+        if (pending.isEmpty()) {
+            pending.add(address.getProtocol() + "://" + address.getAuthority() + "/sitemap.xml");
+        }
+
+        Set<String> read = new HashSet<>();
+        long[] listed = {0};
+        while (!pending.isEmpty() && read.size() < MAX_SITEMAPS && !stopped.getAsBoolean()) {
+            String sitemap = pending.poll();
+            if (!read.add(sitemap)) {
+                continue;
+            }
+            try {
+                fetcher.stream(sitemap, in -> SitemapReader.read(in, new SitemapReader.Handler() {
+                    @Override
+                    public void url(String loc, String lastmod) {
+                        listed[0]++;
+                        handler.url(sitemap, loc, parseLastmod(lastmod));
+                    }
+
+                    @Override
+                    public void sitemap(String loc) {
+                        if (inScope.test(loc)) {
+                            pending.add(loc);
+                        } else {
+                            logger.info("Not reading sitemap {}, it is not in the scope of the crawl", loc);
+                        }
+                    }
+
+                    @Override
+                    public boolean isStopped() {
+                        return stopped.getAsBoolean();
+                    }
+                }));
+            } catch (IOException e) {
+                logger.warn("Failed to read sitemap {}. With error message: {}", sitemap, e.getMessage());
+            }
+        }
+        logger.info("Read {} urls from {} sitemaps of {}", listed[0], read.size(), address.getAuthority());
+        return listed[0];
+    }
+
+    /**
+     * Parses a lastmod, as a W3C datetime: a date, or a date and time with a time zone
+     *
+     * @return the time, or null if there is none, or it is not valid
+     */
+    static Instant parseLastmod(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return null;
+        }
+        try {
+            if (lastmod.length() == "yyyy-mm-dd".length()) {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(lastmod).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Handed the URLs listed in the sitemaps
+     */
+    @FunctionalInterface
+    interface Handler {
+
+        /**
+         * @param sitemap the url of the sitemap listing the URL
+         * @param loc     the URL
+         * @param lastmod when the page was last modified, or null if not known
+         */
+        void url(String sitemap, String loc, Instant lastmod);
+    }
+}
@@ -0,0 +1,84 @@
+package com.blogspot.geekabyte.webmuncher;
+
+/**
+ * A discovered URL together with the URL of the page it was found on, its depth, that is the number of links
+ * followed from the URL the crawl started at, and the number of times fetching it has been attempted and failed
+ *
+ * @author Dadepo Aderemi.
+ */
+class Url {
+    private final String url;
+    private final String sourceUrl;
+    private final int depth;
+    private final int attempts;
+
+    Url(String url, String sourceUrl) {
+        this(url, sourceUrl, 0);
+    }
+
+    Url(String url, String sourceUrl, int depth) {
+        this(url, sourceUrl, depth, 0);
+    }
+
+    private Url(String url, String sourceUrl, int depth, int attempts) {
+        this.url = url;
+        this.sourceUrl = sourceUrl;
+        this.depth = depth;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @param href a url found on the page at this url
+     * @return the url found, one level deeper than this url
+     */
+    Url link(String href) {
+        return new Url(href, url, depth + 1);
+    }
+
+    /**
+     * @return a copy of this url with one more failed attempt
+     */
+    Url retried() {
+        return new Url(url, sourceUrl, depth, attempts + 1);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Two Urls are equal if they point to the same address, regardless of the page they were found on
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return url.equals(((Url) o).url);
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,308 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Puts the URLs found into a canonical form, so that the different ways of writing the same URL are crawled
+ * once. Each URL is parsed once, in a single pass over it, and:
+ * <ul>
+ * <li>its scheme and host are put in lower case, and the trailing dot of the host dropped</li>
+ * <li>the default port of its scheme is dropped</li>
+ * <li>its fragment is dropped</li>
+ * <li>its percent encodings are put in upper case, and those of unreserved characters decoded</li>
+ * <li>the dot segments of its path are removed, and an empty path made /</li>
+ * <li>the query parameters configured are dropped, and the others sorted if configured, see
+ * {@link Webmuncher#setStrippedQueryParams(Set)} and {@link Webmuncher#setSortQueryParams(boolean)}</li>
+ * <li>the trailing slash of its path is dropped if configured, see
+ * {@link Webmuncher#setStripTrailingSlash(boolean)}</li>
+ * </ul>
+ * URLs that are not http or https, such as mailto: links, have no canonical form, as they are not crawled.
+ * Thread safe.
+ *
+ * @author Dadepo Aderemi.
+ */
+class UrlCanonicalizer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Set<String> strippedParams = new HashSet<>();
+    // the stripped params given with a trailing *, as prefixes
+    private final List<String> strippedPrefixes = new ArrayList<>();
+    private final boolean sortParams;
+    private final boolean stripTrailingSlash;
+
+    /**
+     * @param strippedParams     the names of the query parameters to drop, a name ending with * dropping those
+     *                           it is a prefix of
+     * @param sortParams         true to sort the query parameters left
+     * @param stripTrailingSlash true to drop the trailing slash of paths other than /
+     */
+    UrlCanonicalizer(Set<String> strippedParams, boolean sortParams, boolean stripTrailingSlash) {
+        for (String param : strippedParams) {
+            if (param.endsWith("*")) {
+                strippedPrefixes.add(param.substring(0, param.length() - 1));
+            } else {
+                this.strippedParams.add(param);
+            }
+        }
+        this.sortParams = sortParams;
+        this.stripTrailingSlash = stripTrailingSlash;
+    }
+
+    /**
+     * @param url an absolute url
+     * @return the canonical form of the url, or null if it is not an http or https url, or can not be parsed
+     */
+    String canonicalize(String url) {
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && url.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int colon = url.indexOf(':', start);
+        if (colon < 0 || colon >= end || !url.startsWith("//", colon + 1)) {
+            return null;
+        }
+        String scheme = url.substring(start, colon).toLowerCase(Locale.ENGLISH);
+        int defaultPort;
+        if (scheme.equals("http")) {
+            defaultPort = 80;
+        } else if (scheme.equals("https")) {
+            defaultPort = 443;
+        } else {
+            return null;
+        }
+
+        // the fragment is dropped
+        int fragment = url.indexOf('#', colon);
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        int authorityStart = colon + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?') {
+            authorityEnd++;
+        }
+        int query = url.indexOf('?', authorityEnd);
+        int pathEnd = query >= 0 && query < end ? query : end;
+
+        StringBuilder canonical = new StringBuilder(end - start).append(scheme).append("://");
+        if (!appendAuthority(canonical, url, authorityStart, authorityEnd, defaultPort)) {
+            return null;
+        }
+        String path = removeDotSegments(normalizeEncoding(url, authorityEnd, pathEnd));
+        if (stripTrailingSlash && path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        canonical.append(path);
+        if (pathEnd < end) {
+            appendQuery(canonical, normalizeEncoding(url, pathEnd + 1, end));
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * @param canonicalUrl a url in its canonical form
+     * @return the host of the url, in lower case
+     */
+    static String host(String canonicalUrl) {
+        int start = canonicalUrl.indexOf("://") + 3;
+        int end = start;
+        while (end < canonicalUrl.length() && canonicalUrl.charAt(end) != '/') {
+            end++;
+        }
+        int at = canonicalUrl.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        if (canonicalUrl.charAt(start) == '[') {
+            return canonicalUrl.substring(start, canonicalUrl.indexOf(']', start) + 1);
+        }
+        int colon = canonicalUrl.indexOf(':', start);
+        return canonicalUrl.substring(start, colon >= 0 && colon < end ? colon : end);
+    }
+
+    private static boolean appendAuthority(StringBuilder canonical, String url, int start, int end, int defaultPort) {
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            // the user info is kept as it is
+            canonical.append(url, start, at + 1);
+            start = at + 1;
+        }
+        int hostEnd;
+        int portStart = -1;
+        if (start < end && url.charAt(start) == '[') {
+            // an IPv6 address
+            int close = url.indexOf(']', start);
+            if (close < 0 || close >= end) {
+                return false;
+            }
+            hostEnd = close + 1;
+            if (hostEnd < end) {
+                if (url.charAt(hostEnd) != ':') {
+                    return false;
+                }
+                portStart = hostEnd + 1;
+            }
+        } else {
+            int colon = url.indexOf(':', start);
+            hostEnd = colon >= 0 && colon < end ? colon : end;
+            if (hostEnd < end) {
+                portStart = hostEnd + 1;
+            }
+        }
+        if (hostEnd > start && url.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+        if (hostEnd == start) {
+            return false;
+        }
+        canonical.append(url.substring(start, hostEnd).toLowerCase(Locale.ENGLISH));
+
+        if (portStart >= 0 && portStart < end) {
+            int port = 0;
+            for (int i = portStart; i < end; i++) {
+                char c = url.charAt(i);
+                if (c < '0' || c > '9' || port > 65535) {
+                    return false;
+                }
+                port = port * 10 + (c - '0');
+            }
+            if (port > 65535) {
+                return false;
+            }
+            if (port != defaultPort) {
+                canonical.append(':').append(port);
+            }
+        }
+        return true;
+    }
+
+    private void appendQuery(StringBuilder canonical, String query) {
+        List<String> params = new ArrayList<>();
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                String param = query.substring(start, end);
+                int equals = param.indexOf('=');
+                if (!isStripped(equals < 0 ? param : param.substring(0, equals))) {
+                    params.add(param);
+                }
+            }
+            start = end + 1;
+        }
+        if (params.isEmpty()) {
+            return;
+        }
+        if (sortParams) {
+            Collections.sort(params);
+        }
+        canonical.append('?');
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                canonical.append('&');
+            }
+            canonical.append(params.get(i));
+        }
+    }
+
+    private boolean isStripped(String name) {
+        if (strippedParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : strippedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts the percent encodings in the given part of the url in upper case, and decodes those of unreserved
+     * characters
+     */
+    private static String normalizeEncoding(String url, int start, int end) {
+        int percent = url.indexOf('%', start);
+        if (percent < 0 || percent >= end) {
+            return url.substring(start, end);
+        }
+        StringBuilder normalized = new StringBuilder(end - start);
+        normalized.append(url, start, percent);
+        int i = percent;
+        while (i < end) {
+            char c = url.charAt(i);
+            int high = c == '%' && i + 2 < end ? Character.digit(url.charAt(i + 1), 16) : -1;
+            int low = high >= 0 ? Character.digit(url.charAt(i + 2), 16) : -1;
+            if (low < 0) {
+                normalized.append(c);
+                i++;
+                continue;
+            }
+            char decoded = (char) (high * 16 + low);
+            if (isUnreserved(decoded)) {
+                normalized.append(decoded);
+            } else {
+                normalized.append('%').append(HEX[high]).append(HEX[low]);
+            }
+            i += 3;
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Removes the . and .. segments of the given path, as RFC 3986 has it
+     */
+    static String removeDotSegments(String path) {
+        if (path.isEmpty()) {
+            return "/";
+        }
+        if (!path.contains("/.")) {
+            return path;
+        }
+        String[] segments = path.split("/", -1);
+        List<String> kept = new ArrayList<>(segments.length);
+        boolean trailingSlash = false;
+        // the path starts with /, so the first segment is empty
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (segment.equals(".")) {
+                trailingSlash = last;
+            } else if (segment.equals("..")) {
+                if (!kept.isEmpty()) {
+                    kept.remove(kept.size() - 1);
+                }
+                trailingSlash = last;
+            } else {
+                kept.add(segment);
+            }
+        }
+        StringBuilder removed = new StringBuilder(path.length());
+        for (String segment : kept) {
+            removed.append('/').append(segment);
+        }
+        if (trailingSlash || kept.isEmpty()) {
+            removed.append('/');
+        }
+        return removed.toString();
+    }
+}
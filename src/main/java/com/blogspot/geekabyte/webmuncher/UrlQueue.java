@@ -0,0 +1,34 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import java.io.Closeable;
+
+/**
+ * First in, first out queue of URLs, backing the {@link Frontier}
+ *
+ * @author Dadepo Aderemi.
+ */
+interface UrlQueue extends Closeable {
+
+    /**
+     * @param url a url to queue
+     * @return false if the url can not be held by the queue, in which case it must not be added
+     */
+    default boolean accepts(Url url) {
+        return true;
+    }
+
+    void add(Url url);
+
+    /**
+     * @return the url at the head of the queue, or null if the queue is empty
+     */
+    Url poll();
+
+    long size();
+
+    /**
+     * Releases the resources held by the queue. Does not throw, as there is nothing left to do about it
+     */
+    @Override
+    void close();
+}
@@ -1,10 +1,12 @@
 package com.blogspot.geekabyte.webmuncher;
 
+import com.blogspot.geekabyte.webmuncher.dedup.HashSetSeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.exceptions.FatalError;
 import com.blogspot.geekabyte.webmuncher.interfaces.ErrorAction;
 import com.blogspot.geekabyte.webmuncher.interfaces.FetchAction;
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.interfaces.UrlScorer;
 import com.blogspot.geekabyte.webmuncher.interfaces.callbacks.FetchExitCallback;
-import org.jsoup.Jsoup;
-import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -15,20 +17,23 @@ import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -41,13 +46,30 @@ import java.util.stream.Stream;
  */
 public class Webmuncher {
 
+    /**
+     * Extensions of files that are not pages, skipped by default. See {@link #setSkippedExtensions(Set)}
+     */
+    public static final Set<String> DEFAULT_SKIPPED_EXTENSIONS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods",
+                    "zip", "gz", "tgz", "bz2", "rar", "7z", "tar", "jar", "exe", "msi", "dmg", "iso", "apk",
+                    "jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "webp", "ico", "svg",
+                    "mp3", "wav", "ogg", "flac", "mp4", "m4v", "avi", "mov", "wmv", "webm", "mkv",
+                    "woff", "woff2", "ttf", "eot")));
+
+    /**
+     * Query parameters dropped from the URLs found by default: the sort order of Apache directory listings, and
+     * the tracking parameters of campaigns. See {@link #setStrippedQueryParams(Set)}
+     */
+    public static final Set<String> DEFAULT_STRIPPED_QUERY_PARAMS = Collections.unmodifiableSet(
+            new LinkedHashSet<>(Arrays.asList("C", "utm_*")));
+
     Logger logger = LoggerFactory.getLogger(Webmuncher.class);
 
     private String baseUrl;
     private ExecutorService executorService;
-    private Map<String, Integer> retryLog = new HashMap<>();
     private int delay = 1;
     private int maxRetry = 0;
+    private int retryBackOff = 1000;
     private List<String> userAgents = new ArrayList<>();
     private List<String> referrals = new ArrayList<>();
     private FetchAction action;
@@ -59,6 +81,48 @@ public class Webmuncher {
     private Set<Pattern> excludePattern = new LinkedHashSet<>();
     private RandomDelay randomDelay;
     private int timeout = 1000;
+    private int concurrency = 1;
+    private boolean virtualThreads = false;
+    private Path frontierDirectory;
+    private int maxUrlsInMemory;
+    private Supplier<SeenUrlStore> seenUrlStore = HashSetSeenUrlStore::new;
+    private boolean collectCrawledUrls = true;
+    private Path checkpoint;
+    private int maxDepth = -1;
+    private CrawlOrder crawlOrder = CrawlOrder.DISCOVERY;
+    private UrlScorer urlScorer;
+    private long maxPages = -1;
+    private long maxBytes = -1;
+    private int maxPagesPerHost = -1;
+    private Duration maxDuration;
+    private int maxConnectionsPerHost = -1;
+    private Path recrawlCache;
+    private boolean processUnchangedPages = false;
+    private Set<String> skippedExtensions = DEFAULT_SKIPPED_EXTENSIONS;
+    private boolean headProbe = false;
+    private boolean abortUnsupportedDownloads = true;
+    private int maxPageSize = -1;
+    private boolean truncateLargePages = false;
+    private boolean preResolveHosts = true;
+    private Duration dnsNegativeTtl = Duration.ofMinutes(1);
+    private boolean respectRobotsTxt = false;
+    private String robotsUserAgent = "webmuncher";
+    private Duration robotsTxtTtl = Duration.ofDays(1);
+    private boolean sitemapSeeding = false;
+    private boolean adaptiveHostConcurrency = false;
+    private boolean adaptiveTimeouts = false;
+    private Duration minTimeout = Duration.ofMillis(500);
+    private boolean streamingLinkExtraction = false;
+    private int parseThreads = 0;
+    private int sinkThreads = 0;
+    private Scope scope = Scope.SUBDOMAINS;
+    private Set<String> strippedQueryParams = DEFAULT_STRIPPED_QUERY_PARAMS;
+    private boolean sortQueryParams = false;
+    private boolean stripTrailingSlash = false;
+    // of the crawl in progress, or the last one
+    private volatile UrlCanonicalizer canonicalizer;
+    // the crawl in progress, or the last one
+    private volatile CrawlJob crawlJob;
 
     public Webmuncher() {
 
@@ -99,201 +163,1284 @@ public class Webmuncher {
             return this;
         }
 
-        public Builder withDelayInBetweenRequest(int delay) {
-            webmuncher.setDelay(delay);
-            return this;
-        }
+        public Builder withDelayInBetweenRequest(int delay) {
+            webmuncher.setDelay(delay);
+            return this;
+        }
+
+        public Builder withRequestTimeOut(int timeOut) {
+            webmuncher.setTimeout(timeOut);
+            return this;
+        }
+
+        public Builder withConcurrency(int concurrency) {
+            webmuncher.setConcurrency(concurrency);
+            return this;
+        }
+
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            webmuncher.setVirtualThreads(virtualThreads);
+            return this;
+        }
+
+        public Builder withDiskFrontier(Path directory, int maxUrlsInMemory) {
+            webmuncher.setDiskFrontier(directory, maxUrlsInMemory);
+            return this;
+        }
+
+        public Builder withSeenUrlStore(Supplier<SeenUrlStore> seenUrlStore) {
+            webmuncher.setSeenUrlStore(seenUrlStore);
+            return this;
+        }
+
+        public Builder withCollectCrawledUrls(boolean collectCrawledUrls) {
+            webmuncher.setCollectCrawledUrls(collectCrawledUrls);
+            return this;
+        }
+
+        public Builder withCheckpoint(Path checkpoint) {
+            webmuncher.setCheckpoint(checkpoint);
+            return this;
+        }
+
+        public Builder withMaxDepth(int maxDepth) {
+            webmuncher.setMaxDepth(maxDepth);
+            return this;
+        }
+
+        public Builder withCrawlOrder(CrawlOrder crawlOrder) {
+            webmuncher.setCrawlOrder(crawlOrder);
+            return this;
+        }
+
+        public Builder withUrlScorer(UrlScorer urlScorer) {
+            webmuncher.setUrlScorer(urlScorer);
+            return this;
+        }
+
+        public Builder withMaxPages(long maxPages) {
+            webmuncher.setMaxPages(maxPages);
+            return this;
+        }
+
+        public Builder withMaxBytes(long maxBytes) {
+            webmuncher.setMaxBytes(maxBytes);
+            return this;
+        }
+
+        public Builder withMaxPagesPerHost(int maxPagesPerHost) {
+            webmuncher.setMaxPagesPerHost(maxPagesPerHost);
+            return this;
+        }
+
+        public Builder withMaxDuration(Duration maxDuration) {
+            webmuncher.setMaxDuration(maxDuration);
+            return this;
+        }
+
+        public Builder withMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            webmuncher.setMaxConnectionsPerHost(maxConnectionsPerHost);
+            return this;
+        }
+
+        public Builder withRecrawlCache(Path recrawlCache) {
+            webmuncher.setRecrawlCache(recrawlCache);
+            return this;
+        }
+
+        public Builder withProcessUnchangedPages(boolean processUnchangedPages) {
+            webmuncher.setProcessUnchangedPages(processUnchangedPages);
+            return this;
+        }
+
+        public Builder withSkippedExtensions(Set<String> skippedExtensions) {
+            webmuncher.setSkippedExtensions(skippedExtensions);
+            return this;
+        }
+
+        public Builder withHeadProbe(boolean headProbe) {
+            webmuncher.setHeadProbe(headProbe);
+            return this;
+        }
+
+        public Builder withAbortUnsupportedDownloads(boolean abortUnsupportedDownloads) {
+            webmuncher.setAbortUnsupportedDownloads(abortUnsupportedDownloads);
+            return this;
+        }
+
+        public Builder withMaxPageSize(int maxPageSize) {
+            webmuncher.setMaxPageSize(maxPageSize);
+            return this;
+        }
+
+        public Builder withTruncateLargePages(boolean truncateLargePages) {
+            webmuncher.setTruncateLargePages(truncateLargePages);
+            return this;
+        }
+
+        public Builder withPreResolveHosts(boolean preResolveHosts) {
+            webmuncher.setPreResolveHosts(preResolveHosts);
+            return this;
+        }
+
+        public Builder withDnsNegativeTtl(Duration dnsNegativeTtl) {
+            webmuncher.setDnsNegativeTtl(dnsNegativeTtl);
+            return this;
+        }
+
+        public Builder withRespectRobotsTxt(boolean respectRobotsTxt) {
+            webmuncher.setRespectRobotsTxt(respectRobotsTxt);
+            return this;
+        }
+
+        public Builder withRobotsUserAgent(String robotsUserAgent) {
+            webmuncher.setRobotsUserAgent(robotsUserAgent);
+            return this;
+        }
+
+        public Builder withRobotsTxtTtl(Duration robotsTxtTtl) {
+            webmuncher.setRobotsTxtTtl(robotsTxtTtl);
+            return this;
+        }
+
+        public Builder withSitemapSeeding(boolean sitemapSeeding) {
+            webmuncher.setSitemapSeeding(sitemapSeeding);
+            return this;
+        }
+
+        public Builder withAdaptiveHostConcurrency(boolean adaptiveHostConcurrency) {
+            webmuncher.setAdaptiveHostConcurrency(adaptiveHostConcurrency);
+            return this;
+        }
+
+        public Builder withAdaptiveTimeouts(boolean adaptiveTimeouts) {
+            webmuncher.setAdaptiveTimeouts(adaptiveTimeouts);
+            return this;
+        }
+
+        public Builder withMinTimeout(Duration minTimeout) {
+            webmuncher.setMinTimeout(minTimeout);
+            return this;
+        }
+
+        public Builder withStreamingLinkExtraction(boolean streamingLinkExtraction) {
+            webmuncher.setStreamingLinkExtraction(streamingLinkExtraction);
+            return this;
+        }
+
+        public Builder withParseThreads(int parseThreads) {
+            webmuncher.setParseThreads(parseThreads);
+            return this;
+        }
+
+        public Builder withSinkThreads(int sinkThreads) {
+            webmuncher.setSinkThreads(sinkThreads);
+            return this;
+        }
+
+        public Builder withScope(Scope scope) {
+            webmuncher.setScope(scope);
+            return this;
+        }
+
+        public Builder withStrippedQueryParams(Set<String> strippedQueryParams) {
+            webmuncher.setStrippedQueryParams(strippedQueryParams);
+            return this;
+        }
+
+        public Builder withSortQueryParams(boolean sortQueryParams) {
+            webmuncher.setSortQueryParams(sortQueryParams);
+            return this;
+        }
+
+        public Builder withStripTrailingSlash(boolean stripTrailingSlash) {
+            webmuncher.setStripTrailingSlash(stripTrailingSlash);
+            return this;
+        }
+
+        public Builder withMaxRetry(int maxRetry) {
+            webmuncher.setMaxRetry(maxRetry);
+            return this;
+        }
+
+        public Builder withRetryBackOff(int retryBackOff) {
+            webmuncher.setRetryBackOff(retryBackOff);
+            return this;
+        }
+
+        public Builder withUserAgents(List<String> userAgents) {
+            webmuncher.setUserAgents(userAgents);
+            return this;
+        }
+
+        public Builder withReferrals(List<String> referrals) {
+            webmuncher.setReferrals(referrals);
+            return this;
+        }
+
+        public Builder withExitCallBack(FetchExitCallback fetchExitCallback) {
+            webmuncher.onExit(fetchExitCallback);
+            return this;
+        }
+
+        ;
+
+        public Builder withErrorAction(ErrorAction errorAction) {
+            webmuncher.setErrorAction(errorAction);
+            return this;
+        }
+
+        public Webmuncher build() {
+            return this.webmuncher;
+        }
+
+        private Builder() {
+            this.webmuncher = new Webmuncher();
+        }
+    }
+
+    /**
+     * Sets the regex patterns a URL should match against in other to be crawled
+     * The patterns are processed based on order of insertion. The first pattern inserted
+     * will be processed first, the last inserted pattern will be processed last. It is
+     * thus advised to provide the patterns in a LinkedHashSet
+     * <p>
+     * The first pattern to match fulfills the match requirement, which means specific patterns
+     * should be included first.
+     *
+     * @param includePattern the patterns as a set of regex Strings
+     */
+    public void match(Set<String> includePattern) {
+        includePattern.forEach(pattern -> {
+            Pattern compiledRegex = Pattern.compile(pattern);
+            this.includePattern.add(compiledRegex);
+        });
+    }
+
+
+    /**
+     * Sets the regex patterns a URL should match against in other to be crawled
+     * The patterns are processed based on order of insertion. The first pattern inserted
+     * will be processed first, the last inserted pattern will be processed last. It is
+     * thus advised to provide the patterns in a LinkedHashSet
+     * <p>
+     * The first pattern to match fulfills the match requirement, which means specific patterns
+     * should be included first.
+     *
+     * @param includePattern the patterns as a comma separated list of regex strings
+     */
+    public void match(String... includePattern) {
+        Stream.of(includePattern).forEach(pattern -> {
+            Pattern compiledRegex = Pattern.compile(pattern);
+            this.includePattern.add(compiledRegex);
+        });
+    }
+
+
+    /**
+     * Sets the regex patterns a URL should match against in other to be excluded from being crawled
+     * The patterns are processed based on order of insertion. The first pattern inserted
+     * will be processed first, the last inserted pattern will be processed last.
+     * <p>
+     * The first pattern to match fulfills the skip requirement, which means specific patterns
+     * should be included first.
+     *
+     * @param excludePattern the patterns as a set of regex Strings
+     */
+    public void skip(Set<String> excludePattern) {
+        excludePattern.forEach(pattern -> {
+            Pattern compiledRegex = Pattern.compile(pattern);
+            this.excludePattern.add(compiledRegex);
+        });
+    }
+
+    /**
+     * Sets the regex patterns a URL should match against in other to be excluded from being crawled
+     * The patterns are processed based on order of insertion. The first pattern inserted
+     * will be processed first, the last inserted pattern will be processed last.
+     * <p>
+     * The first pattern to match fulfills the skip requirement, which means specific patterns
+     * should be included first.
+     *
+     * @param excludePattern the patterns as a comma separated list of regex strings
+     */
+    public void skip(String... excludePattern) {
+        Stream.of(excludePattern).forEach(pattern -> {
+            Pattern compiledRegex = Pattern.compile(pattern);
+            this.excludePattern.add(compiledRegex);
+        });
+    }
+
+    /**
+     * Gets the URLs to be excluded
+     *
+     * @return the URLs to be excluded
+     */
+    public Set<String> getExcludeURLs() {
+        return excludeURLs;
+    }
+
+    /**
+     * Sets the URLs to be excluded
+     *
+     * @param excludeURLs the url to be excluded passed in as set of strings
+     */
+    public void setExcludeURLs(Set<String> excludeURLs) {
+        this.excludeURLs = excludeURLs;
+    }
+
+    /**
+     * Sets the URLs to be excluded
+     *
+     * @param excludeURLs the urls to be excluded passed in as string varargs
+     */
+    public void setExcludeURLs(String... excludeURLs) {
+        Stream.of(excludeURLs).forEach(url -> {
+            this.excludeURLs.add(url);
+        });
+    }
+
+    /**
+     * Gets the set delay between each requests
+     *
+     * @return delay: the set delay (in seconds), between each crawling requests
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * Sets the delay (in seconds) between each crawling requests. The default is 1 i.e. 1 second.
+     * <p>
+     * The delay is kept per host: requests to other hosts do not wait on it.
+     *
+     * @param delay delay between each crawling requests
+     */
+    public void setDelay(int delay) {
+        this.delay = delay;
+        this.randomDelay = null;
+    }
+
+    /**
+     * Set's the lower and upper bound for the delay (in seconds) between each crawling requests
+     * <p>
+     * The required delay is random generated with each requests. The generated random delay will be a number
+     * equals or greater than the minDelay but less or equals to the maxDelay
+     *
+     * @param minDelay the lower bound of delay in seconds
+     * @param maxDelay the upper bound of delay in seconds
+     */
+    public void setDelay(int minDelay, int maxDelay) {
+        this.randomDelay = new RandomDelay(minDelay, maxDelay);
+    }
+
+    /**
+     * Gives the delay (in milliseconds) to observe before the next request to the same host, as
+     * configured with either {@link #setDelay(int)} or {@link #setDelay(int, int)}
+     *
+     * @return the delay in milliseconds
+     */
+    long nextDelay() {
+        if (randomDelay != null) {
+            return randomDelay.getDelay() * 1000L;
+        }
+        return delay * 1000L;
+    }
+
+    /**
+     * Set's the time in seconds for the connection to wait before
+     * a {@link SocketTimeoutException} is thrown. The Default is 10 seconds
+     *
+     * @param timeout the amount of seconds to wait before a timeout
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout * 1000;
+    }
+
+    /**
+     * The number of times to retry failed request due to time outs. The default is 0, meaning no retries.
+     * Requests failed for other reasons that may not happen again, a refused connection or a 5xx or 429 status,
+     * are retried as well.
+     *
+     * @param maxRetry the number of max try
+     */
+    public void setMaxRetry(int maxRetry) {
+        this.maxRetry = maxRetry;
+    }
+
+    /**
+     * Returns the number of times a failed request is retried
+     *
+     * @return the number of times a failed request is retried
+     */
+    public int getMaxRetry() {
+        return maxRetry;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait before retrying a failed request. The wait doubles with each retry of
+     * the same request, and is randomly shortened by up to half, so requests that failed together are not all
+     * retried together. Retries wait in a queue, without holding up the fetching of other pages.
+     * The default is 1000 milliseconds.
+     *
+     * @param retryBackOff the time in milliseconds to wait before the first retry
+     */
+    public void setRetryBackOff(int retryBackOff) {
+        this.retryBackOff = retryBackOff;
+    }
+
+    /**
+     * Returns the time in milliseconds to wait before retrying a failed request
+     *
+     * @return the time in milliseconds to wait before the first retry
+     */
+    public int getRetryBackOff() {
+        return retryBackOff;
+    }
+
+    /**
+     * Gets the number of pages fetched at the same time
+     *
+     * @return the number of pages fetched at the same time
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the number of pages that are fetched at the same time. Crawling is mostly spent waiting
+     * on the network, so fetching several pages at once speeds up a crawl. The default is 1,
+     * meaning pages are fetched one after the other.
+     * <p>
+     * When set to more than 1, the {@link FetchAction} and {@link ErrorAction} would be called
+     * from multiple threads and should thus be thread safe.
+     *
+     * @param concurrency the number of pages to fetch at the same time
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency should be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Returns true if pages are fetched on virtual threads
+     *
+     * @return true if pages are fetched on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Fetch each page on its own virtual thread instead of on a pool of platform threads. A blocked
+     * fetch then no longer ties up a platform thread, which allows for a much higher concurrency,
+     * in the tens of thousands, as set via {@link #setConcurrency(int)}; the concurrency in this mode
+     * is the cap on the number of requests in flight. The default is false.
+     * <p>
+     * Virtual threads require Java 21. On older versions of Java, a warning is logged and
+     * pages are fetched on platform threads.
+     *
+     * @param virtualThreads true to fetch pages on virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Gets the directory the URLs still to be crawled are spilled to
+     *
+     * @return the directory, or null if the URLs still to be crawled are all held in memory
+     */
+    public Path getFrontierDirectory() {
+        return frontierDirectory;
+    }
+
+    /**
+     * Gets the number of URLs still to be crawled that are held in memory when spilling to disk
+     *
+     * @return the number of URLs held in memory
+     */
+    public int getMaxUrlsInMemory() {
+        return maxUrlsInMemory;
+    }
+
+    /**
+     * Keeps at most maxUrlsInMemory of the URLs still to be crawled in memory, the rest is spilled to
+     * memory-mapped files in the given directory. Use for crawls that discover more URLs than fits the heap.
+     * By default all the URLs still to be crawled are held in memory.
+     * <p>
+     * The files are written in a directory of their own under the given directory, and deleted when the
+     * crawl is over.
+     *
+     * @param directory       the directory to spill URLs to
+     * @param maxUrlsInMemory the number of URLs to keep in memory
+     */
+    public void setDiskFrontier(Path directory, int maxUrlsInMemory) {
+        if (maxUrlsInMemory < 1) {
+            throw new IllegalArgumentException("maxUrlsInMemory should be at least 1");
+        }
+        this.frontierDirectory = directory;
+        this.maxUrlsInMemory = maxUrlsInMemory;
+    }
+
+    /**
+     * Sets how the URLs already come across are remembered, so each URL is crawled once. A new
+     * {@link SeenUrlStore} is gotten from the given supplier for every crawl. The default,
+     * {@link HashSetSeenUrlStore}, keeps each URL in full; for large crawls
+     * {@link com.blogspot.geekabyte.webmuncher.dedup.FingerprintSeenUrlStore} takes an order of magnitude less
+     * memory, and {@link com.blogspot.geekabyte.webmuncher.dedup.BloomFilterSeenUrlStore} less still.
+     *
+     * @param seenUrlStore supplies the store to use for a crawl
+     */
+    public void setSeenUrlStore(Supplier<SeenUrlStore> seenUrlStore) {
+        this.seenUrlStore = seenUrlStore;
+    }
+
+    SeenUrlStore newSeenUrlStore() {
+        return seenUrlStore.get();
+    }
+
+    /**
+     * Returns true if the crawled URLs are collected and returned at the end of a crawl
+     *
+     * @return true if the crawled URLs are collected
+     */
+    public boolean isCollectCrawledUrls() {
+        return collectCrawledUrls;
+    }
+
+    /**
+     * Sets if the crawled URLs are collected, to be returned by {@link #crawl(String)} and handed to the
+     * {@link FetchExitCallback}. The default is true. For very large crawls, where the crawled URLs would
+     * take up too much memory, set to false: an empty set is then returned.
+     *
+     * @param collectCrawledUrls false to not collect the crawled URLs
+     */
+    public void setCollectCrawledUrls(boolean collectCrawledUrls) {
+        this.collectCrawledUrls = collectCrawledUrls;
+    }
+
+    /**
+     * Returns the file the progress of a crawl is checkpointed to
+     *
+     * @return the checkpoint file, or null if crawls are not checkpointed
+     */
+    public Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Sets a file to checkpoint the progress of a crawl to, so the crawl can be carried on with
+     * {@link #resume(Path)} if it gets interrupted, for instance by the JVM going down. The URLs queued and
+     * crawled are appended to the file as the crawl goes, and synced to disk about every second. Starting a
+     * crawl replaces any existing file.
+     *
+     * @param checkpoint the checkpoint file
+     */
+    public void setCheckpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns the maximum depth crawled
+     *
+     * @return the maximum depth crawled, or -1 if there is no maximum
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the maximum depth to crawl, that is the number of links followed from the URL the crawl starts at.
+     * With a maximum depth of 0 only the URL the crawl starts at is crawled. The default is -1, meaning there
+     * is no maximum.
+     *
+     * @param maxDepth the maximum depth to crawl
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the order in which the URLs found are crawled
+     *
+     * @return the order in which the URLs found are crawled
+     */
+    public CrawlOrder getCrawlOrder() {
+        return crawlOrder;
+    }
+
+    /**
+     * Sets the order in which the URLs found are crawled, so the most valuable pages are crawled first, see
+     * {@link CrawlOrder}. The default is {@link CrawlOrder#DISCOVERY}.
+     * <p>
+     * With any other order, the URLs still to be crawled are held in memory, even when
+     * {@link #setDiskFrontier(Path, int)} is set.
+     *
+     * @param crawlOrder the order in which the URLs found are crawled
+     */
+    public void setCrawlOrder(CrawlOrder crawlOrder) {
+        this.crawlOrder = crawlOrder;
+    }
+
+    /**
+     * Sets the {@link UrlScorer} that scores the URLs found, and sets the crawl order to {@link CrawlOrder#SCORE}
+     * so the URLs with the highest scores are crawled first.
+     *
+     * @param urlScorer the {@link UrlScorer} that scores the URLs found
+     */
+    public void setUrlScorer(UrlScorer urlScorer) {
+        this.urlScorer = urlScorer;
+        this.crawlOrder = CrawlOrder.SCORE;
+    }
+
+    /**
+     * Returns the maximum number of pages requested in a crawl
+     *
+     * @return the maximum number of pages requested, or -1 if there is no maximum
+     */
+    public long getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Sets the maximum number of pages requested in a crawl, retries included. Once reached, no more pages are
+     * requested: the crawl returns the URLs crawled so far, once the pages being fetched are done. The default is
+     * -1, meaning there is no maximum.
+     *
+     * @param maxPages the maximum number of pages requested
+     */
+    public void setMaxPages(long maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Returns the maximum number of bytes fetched in a crawl
+     *
+     * @return the maximum number of bytes fetched, or -1 if there is no maximum
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes fetched in a crawl, counting the bodies of the pages fetched. Once
+     * reached, no more pages are requested: the crawl returns the URLs crawled so far, once the pages being
+     * fetched are done. The bytes fetched can thus go over the maximum by the size of the pages being fetched.
+     * The default is -1, meaning there is no maximum.
+     *
+     * @param maxBytes the maximum number of bytes fetched
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the maximum number of pages requested from each host in a crawl
+     *
+     * @return the maximum number of pages requested from each host, or -1 if there is no maximum
+     */
+    public int getMaxPagesPerHost() {
+        return maxPagesPerHost;
+    }
+
+    /**
+     * Sets the maximum number of pages requested from each host in a crawl, retries included. Once reached for a
+     * host, the URLs found on that host are dropped. The default is -1, meaning there is no maximum.
+     *
+     * @param maxPagesPerHost the maximum number of pages requested from each host
+     */
+    public void setMaxPagesPerHost(int maxPagesPerHost) {
+        this.maxPagesPerHost = maxPagesPerHost;
+    }
+
+    /**
+     * Returns how long a crawl can go on for
+     *
+     * @return how long a crawl can go on for, or null if there is no limit
+     */
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * Sets how long a crawl can go on for. Once up, no more pages are requested: the crawl returns the URLs
+     * crawled so far, once the pages being fetched are done, which takes at most the request time out.
+     * The default is null, meaning there is no limit.
+     * <p>
+     * A crawl carried on with {@link #resume(Path)} gets a new budget: the limits apply to the resumed crawl only.
+     *
+     * @param maxDuration how long a crawl can go on for
+     */
+    public void setMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Returns the maximum number of connections open to a host at the same time
+     *
+     * @return the maximum number of connections open to a host, or -1 if there is no maximum
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the maximum number of connections open to a host at the same time. Connections are kept alive and
+     * reused for later requests to the same host, which saves setting up a connection, and a TLS handshake, for
+     * each page. The default is -1, meaning there is no maximum other than the concurrency.
+     *
+     * @param maxConnectionsPerHost the maximum number of connections open to a host
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Returns the file pages crawled are remembered in, to tell on a later crawl if they have changed
+     *
+     * @return the recrawl cache file, or null if pages are not remembered
+     */
+    public Path getRecrawlCache() {
+        return recrawlCache;
+    }
+
+    /**
+     * Sets a file to remember the pages crawled in, so a later crawl, such as a daily recrawl, only downloads
+     * and parses the pages that have changed since. For each page the ETag and Last-Modified sent by the server
+     * are kept, along with a hash of the page and the links found on it. Pages are then requested with
+     * If-None-Match and If-Modified-Since, and a page the server answers with 304 Not Modified, or whose hash is
+     * unchanged, is not parsed again: the links remembered for it are followed instead.
+     * <p>
+     * The file is read when a crawl starts, and written back when it ends. The default is null, meaning pages
+     * are not remembered.
+     *
+     * @param recrawlCache the recrawl cache file
+     */
+    public void setRecrawlCache(Path recrawlCache) {
+        this.recrawlCache = recrawlCache;
+    }
+
+    /**
+     * Returns whether pages that have not changed since the last crawl are passed to the {@link FetchAction}
+     *
+     * @return true if unchanged pages are processed
+     */
+    public boolean isProcessUnchangedPages() {
+        return processUnchangedPages;
+    }
+
+    /**
+     * Sets whether pages that have not changed since the last crawl, as told by the recrawl cache set with
+     * {@link #setRecrawlCache(Path)}, are passed to the {@link FetchAction}. Such pages are passed with a
+     * status of 304 and without their content, which is not downloaded again. The default is false, meaning
+     * only new and changed pages are processed.
+     *
+     * @param processUnchangedPages true to process unchanged pages
+     */
+    public void setProcessUnchangedPages(boolean processUnchangedPages) {
+        this.processUnchangedPages = processUnchangedPages;
+    }
+
+    /**
+     * Returns the extensions of the URLs that are not fetched
+     *
+     * @return the extensions skipped, in lower case
+     */
+    public Set<String> getSkippedExtensions() {
+        return skippedExtensions;
+    }
+
+    /**
+     * Sets the extensions of the URLs that are not fetched, as they are not pages: images, archives, documents
+     * and such. A URL whose path ends with one of the extensions, whatever its case, is passed to the
+     * {@link FetchAction} with a status of 415, as it would be once fetched, without being requested. The
+     * default is {@link #DEFAULT_SKIPPED_EXTENSIONS}. An empty set has all URLs fetched.
+     *
+     * @param skippedExtensions the extensions to skip, without the dot
+     */
+    public void setSkippedExtensions(Set<String> skippedExtensions) {
+        this.skippedExtensions = skippedExtensions.stream()
+                .map(extension -> extension.toLowerCase(Locale.ENGLISH))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns whether a HEAD request is sent before each page is fetched
+     *
+     * @return true if a HEAD request is sent first
+     */
+    public boolean isHeadProbe() {
+        return headProbe;
+    }
+
+    /**
+     * Sets whether a HEAD request is sent before each page is fetched, to check its content type. Content that
+     * is not a page is then never downloaded, at the cost of a request more for each page. Worth it for sites
+     * that serve many large files from URLs without a telling extension. The default is false.
+     *
+     * @param headProbe true to send a HEAD request first
+     */
+    public void setHeadProbe(boolean headProbe) {
+        this.headProbe = headProbe;
+    }
+
+    /**
+     * Returns whether downloads of content that is not a page are aborted
+     *
+     * @return true if downloads of content that is not a page are aborted
+     */
+    public boolean isAbortUnsupportedDownloads() {
+        return abortUnsupportedDownloads;
+    }
+
+    /**
+     * Sets whether the download of content that is not a page is aborted as soon as the Content-Type header
+     * tells so. The connection is then closed rather than reused, unless the content is small. When false, the
+     * content is read to the end, so the connection can be reused. The default is true.
+     *
+     * @param abortUnsupportedDownloads true to abort downloads of content that is not a page
+     */
+    public void setAbortUnsupportedDownloads(boolean abortUnsupportedDownloads) {
+        this.abortUnsupportedDownloads = abortUnsupportedDownloads;
+    }
+
+    /**
+     * Returns the maximum size of a page
+     *
+     * @return the maximum size of a page in bytes, or -1 if there is no maximum
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Sets the maximum size of a page, once inflated if it is sent compressed. The size is checked as the page is
+     * downloaded, and the download is aborted once it goes over, so a page that never ends does no harm. Such a
+     * page is passed to the {@link FetchAction} with a status of 413, unless it is to be truncated, see
+     * {@link #setTruncateLargePages(boolean)}. The default is -1, meaning there is no maximum.
+     *
+     * @param maxPageSize the maximum size of a page in bytes
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Returns whether pages larger than the maximum page size are truncated
+     *
+     * @return true if pages larger than the maximum page size are truncated
+     */
+    public boolean isTruncateLargePages() {
+        return truncateLargePages;
+    }
+
+    /**
+     * Sets whether pages larger than the maximum page size, set with {@link #setMaxPageSize(int)}, are truncated
+     * rather than failed. Only the first bytes of such a page, up to the maximum page size, are then downloaded,
+     * parsed and processed, and the links found in them followed. The page is marked as truncated, see
+     * {@link FetchedPage#isTruncated()}. The default is false.
+     *
+     * @param truncateLargePages true to truncate pages larger than the maximum page size
+     */
+    public void setTruncateLargePages(boolean truncateLargePages) {
+        this.truncateLargePages = truncateLargePages;
+    }
+
+    /**
+     * Returns whether hosts are looked up ahead of their pages being fetched
+     *
+     * @return true if hosts are looked up ahead
+     */
+    public boolean isPreResolveHosts() {
+        return preResolveHosts;
+    }
+
+    /**
+     * Sets whether hosts are looked up in the background as soon as a URL on them is queued, so the lookup is
+     * done by the time the URL is fetched, rather than holding up a worker. What is found is kept in the JVM's
+     * own cache, for {@code networkaddress.cache.ttl} seconds. The default is true.
+     *
+     * @param preResolveHosts true to look hosts up ahead
+     */
+    public void setPreResolveHosts(boolean preResolveHosts) {
+        this.preResolveHosts = preResolveHosts;
+    }
+
+    /**
+     * Returns how long a host that could not be found is remembered
+     *
+     * @return how long a host that could not be found is remembered
+     */
+    public Duration getDnsNegativeTtl() {
+        return dnsNegativeTtl;
+    }
+
+    /**
+     * Sets how long a host that could not be found is remembered. Its pages then fail straight away, with an
+     * {@link java.net.UnknownHostException}, rather than each waiting on a lookup that fails again. The default
+     * is a minute. {@link Duration#ZERO} has hosts looked up again for every page.
+     *
+     * @param dnsNegativeTtl how long a host that could not be found is remembered
+     */
+    public void setDnsNegativeTtl(Duration dnsNegativeTtl) {
+        this.dnsNegativeTtl = dnsNegativeTtl;
+    }
+
+    /**
+     * Returns whether crawls keep to the robots.txt of the sites crawled
+     *
+     * @return true if crawls keep to robots.txt
+     */
+    public boolean isRespectRobotsTxt() {
+        return respectRobotsTxt;
+    }
+
+    /**
+     * Sets whether crawls keep to the robots.txt of the sites crawled. The robots.txt of a site is fetched once,
+     * when the first URL on it is found, and its rules for the user agent set with
+     * {@link #setRobotsUserAgent(String)} checked against every URL found, along with the match and exclude
+     * patterns. A URL disallowed is not crawled. The Crawl-delay of a site, if longer than the delay in between
+     * requests, is waited in between requests to it. The URL a crawl starts from is always crawled.
+     * The default is false.
+     *
+     * @param respectRobotsTxt true to keep to robots.txt
+     */
+    public void setRespectRobotsTxt(boolean respectRobotsTxt) {
+        this.respectRobotsTxt = respectRobotsTxt;
+    }
+
+    /**
+     * Returns the name the crawler goes by in robots.txt
+     *
+     * @return the name the crawler goes by in robots.txt
+     */
+    public String getRobotsUserAgent() {
+        return robotsUserAgent;
+    }
+
+    /**
+     * Sets the name the crawler goes by in robots.txt. The rules of the groups whose User-agent is part of the
+     * name apply, or failing those, the rules for all user agents. The default is {@code webmuncher}.
+     *
+     * @param robotsUserAgent the name the crawler goes by in robots.txt
+     */
+    public void setRobotsUserAgent(String robotsUserAgent) {
+        this.robotsUserAgent = robotsUserAgent;
+    }
+
+    /**
+     * Returns how long the robots.txt of a site is kept before it is fetched again
+     *
+     * @return how long the robots.txt of a site is kept
+     */
+    public Duration getRobotsTxtTtl() {
+        return robotsTxtTtl;
+    }
+
+    /**
+     * Sets how long the robots.txt of a site is kept before it is fetched again, for crawls that go on for
+     * longer. The default is a day.
+     *
+     * @param robotsTxtTtl how long the robots.txt of a site is kept
+     */
+    public void setRobotsTxtTtl(Duration robotsTxtTtl) {
+        this.robotsTxtTtl = robotsTxtTtl;
+    }
+
+    /**
+     * Returns whether crawls are seeded with the URLs listed in the sitemaps of the site
+     *
+     * @return true if crawls are seeded from sitemaps
+     */
+    public boolean isSitemapSeeding() {
+        return sitemapSeeding;
+    }
+
+    /**
+     * Sets whether crawls are seeded with the URLs listed in the sitemaps of the site, as well as those found
+     * on the pages crawled. The sitemaps are those listed in the robots.txt of the site, or failing those
+     * {@code /sitemap.xml}, along with the sitemaps listed in them, if they are sitemap indexes. Sitemaps are
+     * read as they are downloaded, so they can be of any size, and may be gzipped. URLs listed are crawled as
+     * if linked from the page the crawl starts from. With a recrawl cache set, URLs whose lastmod is no later
+     * than when they were last fetched are not fetched again. The default is false.
+     *
+     * @param sitemapSeeding true to seed crawls from sitemaps
+     */
+    public void setSitemapSeeding(boolean sitemapSeeding) {
+        this.sitemapSeeding = sitemapSeeding;
+    }
+
+    /**
+     * Returns whether the number of requests sent to each host at the same time adapts to how the host copes
+     *
+     * @return true if the number of requests per host adapts
+     */
+    public boolean isAdaptiveHostConcurrency() {
+        return adaptiveHostConcurrency;
+    }
 
-        public Builder withRequestTimeOut(int timeOut) {
-            webmuncher.setTimeout(timeOut);
-            return this;
-        }
+    /**
+     * Sets whether the number of requests sent to each host at the same time, and their pace, adapt to how the
+     * host copes. Each host starts with one request at a time, which grows while requests complete in good time,
+     * up to the concurrency, or the maximum number of connections per host if lower. Requests that time out, or
+     * are answered with a 429 or 5xx status, halve the number, and space the requests to the host further
+     * apart, which then shrinks again as requests go well. The delay in between requests is kept whatever the
+     * pace. The current limits can be watched with {@link #getHostLimits()}. The default is false.
+     *
+     * @param adaptiveHostConcurrency true for the number of requests per host to adapt
+     */
+    public void setAdaptiveHostConcurrency(boolean adaptiveHostConcurrency) {
+        this.adaptiveHostConcurrency = adaptiveHostConcurrency;
+    }
 
-        public Builder withMaxRetry(int maxRetry) {
-            webmuncher.setMaxRetry(maxRetry);
-            return this;
-        }
+    /**
+     * Returns whether the time outs of requests adapt to the latency of each host
+     *
+     * @return true if the time outs adapt
+     */
+    public boolean isAdaptiveTimeouts() {
+        return adaptiveTimeouts;
+    }
 
-        public Builder withUserAgents(List<String> userAgents) {
-            webmuncher.setUserAgents(userAgents);
-            return this;
-        }
+    /**
+     * Sets whether the connect and read time outs of requests adapt to the latency of each host, rather than
+     * all being the time out set with {@link #setTimeout(int)}. The latencies of the requests to a host are
+     * tracked, and its time outs set to four times the 99th percentile, no shorter than the minimum time out,
+     * and no longer than the time out set, which applies until a host has had 20 requests. Requests to a fast
+     * host that stalls thus fail early, so the time out can be set long enough for the slowest hosts without
+     * holding up the fast ones. The default is false.
+     *
+     * @param adaptiveTimeouts true for the time outs to adapt
+     */
+    public void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+        this.adaptiveTimeouts = adaptiveTimeouts;
+    }
 
-        public Builder withReferrals(List<String> referrals) {
-            webmuncher.setReferrals(referrals);
-            return this;
-        }
+    /**
+     * Returns the shortest time out given to requests, when they adapt
+     *
+     * @return the shortest time out
+     */
+    public Duration getMinTimeout() {
+        return minTimeout;
+    }
 
-        public Builder withExitCallBack(FetchExitCallback fetchExitCallback) {
-            webmuncher.onExit(fetchExitCallback);
-            return this;
-        }
+    /**
+     * Sets the shortest time out given to requests, when they adapt to the latency of each host. The default is
+     * half a second.
+     *
+     * @param minTimeout the shortest time out
+     */
+    public void setMinTimeout(Duration minTimeout) {
+        this.minTimeout = minTimeout;
+    }
 
-        ;
+    /**
+     * Returns whether the links of pages are found by scanning them rather than parsing them
+     *
+     * @return true if the links of pages are scanned for
+     */
+    public boolean isStreamingLinkExtraction() {
+        return streamingLinkExtraction;
+    }
 
-        public Builder withErrorAction(ErrorAction errorAction) {
-            webmuncher.setErrorAction(errorAction);
-            return this;
-        }
+    /**
+     * Sets whether the links of pages are found by scanning their bytes for the href of a and base tags, rather
+     * than by parsing them into a document first. The page is then only parsed if the {@link FetchAction} asks
+     * for its html, plain text or title, which a crawl that only discovers links never does. The links found are
+     * the same. Pages in UTF-16 or UTF-32, or in a charset that is not supported, are parsed. The default is
+     * false.
+     *
+     * @param streamingLinkExtraction true to scan pages for their links
+     */
+    public void setStreamingLinkExtraction(boolean streamingLinkExtraction) {
+        this.streamingLinkExtraction = streamingLinkExtraction;
+    }
 
-        public Webmuncher build() {
-            return this.webmuncher;
-        }
+    /**
+     * Gets the number of threads pages are parsed on, apart from the threads they are fetched on
+     *
+     * @return the number of threads pages are parsed on, or 0 if they are parsed where they are fetched
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
 
-        private Builder() {
-            this.webmuncher = new Webmuncher();
+    /**
+     * Sets the number of threads fetched pages are parsed on, and have their links extracted on, apart from the
+     * threads they are fetched on. Fetching is mostly spent waiting on the network, and parsing on the CPU, so
+     * the two are best sized on their own: the concurrency to the number of requests to keep in flight, and the
+     * parse threads to the number of processors. A thread that has fetched a page is then free to fetch the next
+     * one while the page is parsed. Pages wait for a parse thread in a bounded queue, of twice as many pages as
+     * there are threads; once full, fetching waits for it to drain, so pages are not fetched faster than they
+     * can be parsed. The default is 0, meaning pages are parsed on the thread they are fetched on.
+     *
+     * @param parseThreads the number of threads to parse pages on, or 0 to parse them where they are fetched
+     */
+    public void setParseThreads(int parseThreads) {
+        if (parseThreads < 0) {
+            throw new IllegalArgumentException("parseThreads should not be negative");
         }
+        this.parseThreads = parseThreads;
     }
 
     /**
-     * Sets the regex patterns a URL should match against in other to be crawled
-     * The patterns are processed based on order of insertion. The first pattern inserted
-     * will be processed first, the last inserted pattern will be processed last. It is
-     * thus advised to provide the patterns in a LinkedHashSet
-     * <p>
-     * The first pattern to match fulfills the match requirement, which means specific patterns
-     * should be included first.
+     * Gets the number of threads the {@link FetchAction} is called on, apart from the threads pages are parsed on
      *
-     * @param includePattern the patterns as a set of regex Strings
+     * @return the number of threads the action is called on, or 0 if it is called where pages are parsed
      */
-    public void match(Set<String> includePattern) {
-        includePattern.forEach(pattern -> {
-            Pattern compiledRegex = Pattern.compile(pattern);
-            this.includePattern.add(compiledRegex);
-        });
+    public int getSinkThreads() {
+        return sinkThreads;
     }
 
-
     /**
-     * Sets the regex patterns a URL should match against in other to be crawled
-     * The patterns are processed based on order of insertion. The first pattern inserted
-     * will be processed first, the last inserted pattern will be processed last. It is
-     * thus advised to provide the patterns in a LinkedHashSet
+     * Sets the number of threads the {@link FetchAction} is called on, apart from the threads pages are parsed
+     * on. An action that writes pages out, to a database for example, then does not hold up parsing, and is
+     * sized to what its destination copes with. As with {@link #setParseThreads(int)}, pages wait for the action
+     * in a bounded queue of twice as many pages as there are threads, and parsing waits once it is full. The
+     * default is 0, meaning the action is called on the thread the page is parsed on.
      * <p>
-     * The first pattern to match fulfills the match requirement, which means specific patterns
-     * should be included first.
+     * When set to more than 1, the {@link FetchAction} is called from multiple threads and should thus be
+     * thread safe.
      *
-     * @param includePattern the patterns as a comma separated list of regex strings
+     * @param sinkThreads the number of threads to call the action on, or 0 to call it where pages are parsed
      */
-    public void match(String... includePattern) {
-        Stream.of(includePattern).forEach(pattern -> {
-            Pattern compiledRegex = Pattern.compile(pattern);
-            this.includePattern.add(compiledRegex);
-        });
+    public void setSinkThreads(int sinkThreads) {
+        if (sinkThreads < 0) {
+            throw new IllegalArgumentException("sinkThreads should not be negative");
+        }
+        this.sinkThreads = sinkThreads;
     }
 
-
     /**
-     * Sets the regex patterns a URL should match against in other to be excluded from being crawled
-     * The patterns are processed based on order of insertion. The first pattern inserted
-     * will be processed first, the last inserted pattern will be processed last.
-     * <p>
-     * The first pattern to match fulfills the skip requirement, which means specific patterns
-     * should be included first.
+     * Gets which hosts the links found are followed to
      *
-     * @param excludePattern the patterns as a set of regex Strings
+     * @return the scope of the crawl
      */
-    public void skip(Set<String> excludePattern) {
-        excludePattern.forEach(pattern -> {
-            Pattern compiledRegex = Pattern.compile(pattern);
-            this.excludePattern.add(compiledRegex);
-        });
+    public Scope getScope() {
+        return scope;
     }
 
     /**
-     * Sets the regex patterns a URL should match against in other to be excluded from being crawled
-     * The patterns are processed based on order of insertion. The first pattern inserted
-     * will be processed first, the last inserted pattern will be processed last.
-     * <p>
-     * The first pattern to match fulfills the skip requirement, which means specific patterns
-     * should be included first.
+     * Sets which hosts the links found are followed to, as against the host of the URL the crawl starts at: only
+     * that host, or its subdomains too, or any host under the same registrable domain. The host of each link is
+     * matched as a whole, once the link is parsed, so an external URL that merely contains the host is not
+     * followed. The default is {@link Scope#SUBDOMAINS}.
      *
-     * @param excludePattern the patterns as a comma separated list of regex strings
+     * @param scope the scope of the crawl
      */
-    public void skip(String... excludePattern) {
-        Stream.of(excludePattern).forEach(pattern -> {
-            Pattern compiledRegex = Pattern.compile(pattern);
-            this.excludePattern.add(compiledRegex);
-        });
+    public void setScope(Scope scope) {
+        this.scope = scope;
     }
 
     /**
-     * Gets the URLs to be excluded
+     * Gets the names of the query parameters dropped from the URLs found
      *
-     * @return the URLs to be excluded
+     * @return the names of the query parameters dropped
      */
-    public Set<String> getExcludeURLs() {
-        return excludeURLs;
+    public Set<String> getStrippedQueryParams() {
+        return strippedQueryParams;
     }
 
     /**
-     * Sets the URLs to be excluded
+     * Sets the names of the query parameters dropped from the URLs found, as they do not change the page, so
+     * that the URLs that only differ by them are crawled once. A name ending with * drops all the parameters
+     * it is a prefix of, as utm_* does. The default is {@link #DEFAULT_STRIPPED_QUERY_PARAMS}. An empty set
+     * keeps all query parameters.
      *
-     * @param excludeURLs the url to be excluded passed in as set of strings
+     * @param strippedQueryParams the names of the query parameters to drop
      */
-    public void setExcludeURLs(Set<String> excludeURLs) {
-        this.excludeURLs = excludeURLs;
+    public void setStrippedQueryParams(Set<String> strippedQueryParams) {
+        this.strippedQueryParams = strippedQueryParams;
     }
 
     /**
-     * Sets the URLs to be excluded
+     * Returns whether the query parameters of the URLs found are sorted
      *
-     * @param excludeURLs the urls to be excluded passed in as string varargs
+     * @return true if the query parameters are sorted
      */
-    public void setExcludeURLs(String... excludeURLs) {
-        Stream.of(excludeURLs).forEach(url -> {
-            this.excludeURLs.add(url);
-        });
+    public boolean isSortQueryParams() {
+        return sortQueryParams;
     }
 
     /**
-     * Gets the set delay between each requests
+     * Sets whether the query parameters of the URLs found are sorted, so that the URLs that only differ by the
+     * order of their parameters are crawled once. Only for sites that do not make anything of that order. The
+     * default is false.
      *
-     * @return delay: the set delay (in seconds), between each crawling requests
+     * @param sortQueryParams true to sort the query parameters
      */
-    public int getDelay() {
-        return delay;
+    public void setSortQueryParams(boolean sortQueryParams) {
+        this.sortQueryParams = sortQueryParams;
     }
 
     /**
-     * Sets the delay (in seconds) between each crawling requests. The default is 1 i.e. 1 second.
+     * Returns whether the trailing slash of the paths of the URLs found is dropped
      *
-     * @param delay delay between each crawling requests
+     * @return true if the trailing slash is dropped
      */
-    public void setDelay(int delay) {
-        this.delay = delay;
+    public boolean isStripTrailingSlash() {
+        return stripTrailingSlash;
     }
 
     /**
-     * Set's the lower and upper bound for the delay (in seconds) between each crawling requests
-     * <p>
-     * The required delay is random generated with each requests. The generated random delay will be a number
-     * equals or greater than the minDelay but less or equals to the maxDelay
+     * Sets whether the trailing slash of the paths of the URLs found is dropped, so that /a and /a/ are crawled
+     * once. Only for sites that serve the same page for both; those that redirect one to the other are best left
+     * as they are, as each page would then be requested twice. The default is false.
      *
-     * @param minDelay the lower bound of delay in seconds
-     * @param maxDelay the upper bound of delay in seconds
+     * @param stripTrailingSlash true to drop the trailing slash
      */
-    public void setDelay(int minDelay, int maxDelay) {
-        this.randomDelay = new RandomDelay(minDelay, maxDelay);
+    public void setStripTrailingSlash(boolean stripTrailingSlash) {
+        this.stripTrailingSlash = stripTrailingSlash;
     }
 
     /**
-     * Set's the time in seconds for the connection to wait before
-     * a {@link SocketTimeoutException} is thrown. The Default is 10 seconds
+     * Returns, for the crawl in progress, or the last one, the number of requests each host can currently be sent
+     * at the same time. Only kept when {@link #setAdaptiveHostConcurrency(boolean)} is set
      *
-     * @param timeout the amount of seconds to wait before a timeout
+     * @return the limit of each host, by host name, or an empty map if there are none
      */
-    public void setTimeout(int timeout) {
-        this.timeout = timeout * 1000;
+    public Map<String, Integer> getHostLimits() {
+        CrawlJob job = crawlJob;
+        return job == null ? Collections.emptyMap() : job.hostLimits();
     }
 
     /**
-     * The number of times to retry failed request due to time outs. The default is 0, meaning no retries.
+     * Gets the {@link UrlScorer} the queued URLs are ordered by, for the crawl order set
      *
-     * @param maxRetry the number of max try
+     * @return the scorer, or null if the URLs are crawled in the order they are found
      */
-    public void setMaxRetry(int maxRetry) {
-        this.maxRetry = maxRetry;
+    UrlScorer getOrderingScorer() {
+        switch (crawlOrder) {
+            case BREADTH_FIRST:
+                return (url, depth) -> 0;
+            case MATCH_PATTERN:
+                return (url, depth) -> -matchingPattern(url);
+            case SCORE:
+                if (urlScorer == null) {
+                    throw new FatalError("The crawl order is SCORE, but no UrlScorer is set");
+                }
+                return urlScorer;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the position of the first include pattern the given url matches
+     */
+    private int matchingPattern(String url) {
+        int position = 0;
+        for (Pattern pattern : includePattern) {
+            if (pattern.matcher(url).matches()) {
+                return position;
+            }
+            position++;
+        }
+        return position;
     }
 
     /**
@@ -379,8 +1526,53 @@ public class Webmuncher {
         return doCrawl(url, this.excludeURLs);
     }
 
+    /**
+     * Carries on with a crawl that was interrupted, from the given checkpoint. The pages already crawled are
+     * not fetched again. The crawl is carried on with the configuration of this {@link Webmuncher}, which
+     * should be that of the interrupted crawl, and keeps being checkpointed to the same file.
+     * The method is blocking. Only returns when all url has been fetched
+     *
+     * @param checkpoint the checkpoint of the interrupted crawl, see {@link #setCheckpoint(Path)}
+     * @return A set containing all the URL crawled, including those crawled before the interruption
+     * @throws java.io.IOException            if the checkpoint could not be read.
+     * @throws java.lang.InterruptedException if any.
+     * @throws java.net.URISyntaxException    if any.
+     */
+    public Set<String> resume(Path checkpoint) throws IOException, InterruptedException, URISyntaxException {
+        setBaseUrl(CrawlJournal.seed(checkpoint));
+        crawlJob = new CrawlJob(this, excludeURLs);
+        Set<String> crawledURLs = crawlJob.resume(checkpoint);
+        fireOnExit(crawledURLs);
+
+        return crawledURLs;
+    }
+
+    /**
+     * @param url a url
+     * @return true if the path of the url ends with one of the extensions skipped
+     */
+    boolean hasSkippedExtension(String url) {
+        if (skippedExtensions.isEmpty()) {
+            return false;
+        }
+        int end = url.length();
+        for (char delimiter : new char[]{'?', '#'}) {
+            int index = url.indexOf(delimiter);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        int dot = url.lastIndexOf('.', end);
+        int slash = url.lastIndexOf('/', end - 1);
+        // the dot of the host name, as in a .zip domain, is not that of an extension
+        int path = url.indexOf('/', url.indexOf("//") + 2);
+        if (dot < 0 || slash > dot || path < 0 || path > dot) {
+            return false;
+        }
+        return skippedExtensions.contains(url.substring(dot + 1, end).toLowerCase(Locale.ENGLISH));
+    }
 
-    private boolean include(String url) {
+    boolean include(String url) {
         boolean include = shouldInclude(url);
         if (include == true) {
             // although it is in include, check if this is not overridden by being in exclude
@@ -430,21 +1622,33 @@ public class Webmuncher {
      *
      * @param url         a {@link java.lang.String} object.
      * @param excludeURLs a {@link java.util.Set} object.
-     * @return {@link java.util.concurrent.Future} of a set of urls
+     * @return {@link java.util.concurrent.CompletableFuture} of a set of urls
      * @throws java.io.IOException            if any.
      * @throws java.lang.InterruptedException if any.
      * @throws java.net.URISyntaxException    if any.
      */
-    private Future<Set<String>> doCrawlAsync(String url, Set<String> excludeURLs)
+    private CompletableFuture<Set<String>> doCrawlAsync(String url, Set<String> excludeURLs)
             throws IOException, InterruptedException, URISyntaxException {
         setBaseUrl(url);
         assert action != null;
 
-        executorService = Executors.newSingleThreadExecutor();
+        ExecutorService crawler = Executors.newSingleThreadExecutor();
+        executorService = crawler;
 
-        Future<Set<String>> future = executorService.submit(
-                () -> nonRecursiveExtractor(url, excludeURLs)
-        );
+        CompletableFuture<Set<String>> future = new CompletableFuture<>();
+        crawler.execute(() -> {
+            try {
+                future.complete(nonRecursiveExtractor(url, excludeURLs));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        // cancelling the future interrupts the crawl
+        future.whenComplete((crawledURLs, e) -> {
+            if (future.isCancelled()) {
+                crawler.shutdownNow();
+            }
+        });
 
         return future;
     }
@@ -454,35 +1658,50 @@ public class Webmuncher {
      * The method is non blocking as extraction operation is called
      * in another thread
      *
+     * The returned {@link CompletableFuture} completes when the crawl finishes, so further work can be chained
+     * on it, without a thread waiting in {@link CompletableFuture#get()}. Cancelling it interrupts the crawl.
+     *
      * @param url a {@link java.lang.String} object.
-     * @return {@link java.util.concurrent.Future} of a set of urls
+     * @return {@link java.util.concurrent.CompletableFuture} of a set of urls
      * @throws java.io.IOException            if any.
      * @throws java.lang.InterruptedException if any.
      * @throws java.net.URISyntaxException    if any.
      */
-    public Future<Set<String>> crawlAsync(String url) throws IOException, InterruptedException, URISyntaxException {
+    public CompletableFuture<Set<String>> crawlAsync(String url)
+            throws IOException, InterruptedException, URISyntaxException {
         setBaseUrl(url);
         return doCrawlAsync(url, this.excludeURLs);
     }
 
     /**
-     * Gets the {@link org.jsoup.nodes.Document} from a given URL
+     * Creates the {@link DnsCache} for the hosts of a crawl
      *
-     * @param url the URL to crawl
-     * @return {@link org.jsoup.nodes.Document}
-     * @throws java.io.IOException if any.
+     * @return the cache
      */
-    private Document getDocumentFromUrl(String url) throws IOException {
-        String userAgent = randomSelectUserAgent();
-        String referral = randomSelectReferral();
-        Document doc = Jsoup
-                .connect(url)
-                .timeout(timeout)
-                .userAgent(userAgent)
-                .referrer(referral)
-                .get();
-        logger.info("Fetched {} with User Agent: {} and Referral {}", url, userAgent, referral);
-        return doc;
+    DnsCache newDnsCache() {
+        return new DnsCache(dnsNegativeTtl.toNanos());
+    }
+
+    /**
+     * Creates the {@link HttpFetcher} to fetch the pages of a crawl with
+     *
+     * @param dns the cache for the hosts of the crawl
+     * @return the fetcher
+     */
+    HttpFetcher newFetcher(DnsCache dns) {
+        AdaptiveTimeouts timeouts = adaptiveTimeouts
+                ? new AdaptiveTimeouts((int) minTimeout.toMillis(), timeout) : null;
+        return new HttpFetcher(new HttpFetcher.Options()
+                .withTimeout(timeout)
+                .withMaxConnectionsPerHost(maxConnectionsPerHost)
+                .withHeadProbe(headProbe)
+                .withAbortUnsupported(abortUnsupportedDownloads)
+                .withMaxPageSize(maxPageSize)
+                .withTruncateLargePages(truncateLargePages)
+                .withUserAgents(this::randomSelectUserAgent)
+                .withReferrals(this::randomSelectReferral)
+                .withDns(dns)
+                .withTimeouts(timeouts));
     }
 
     /**
@@ -491,7 +1710,7 @@ public class Webmuncher {
      * @param doc the {@link Document} to extrach hrefs from
      * @return set of {@link org.jsoup.nodes.Document}
      */
-    private Set<String> extractAbsHref(Document doc) {
+    Set<String> extractAbsHref(Document doc) {
         Set<String> hrefString = new HashSet<>();
         Element content = doc.body();
         Elements links = content.getElementsByTag("a");
@@ -500,10 +1719,40 @@ public class Webmuncher {
             hrefString.add(href);
         }
 
-        // filter out external urls
-        hrefString = filterOutParamsGeneratedString(hrefString);
-        hrefString = filterOutExternalUrls(hrefString);
-        return hrefString;
+        return filterLinks(hrefString);
+    }
+
+    /**
+     * Extracts all href from the body of a page, by scanning it rather than parsing it, using absolute
+     * resolution
+     *
+     * @param response the page to extract hrefs from, in a charset {@link LinkScanner} can scan
+     * @return set of the absolute hrefs
+     */
+    Set<String> extractAbsHref(FetchResponse response) {
+        return filterLinks(LinkScanner.scan(response.getBody(), response.getCharset(), response.getUrl()));
+    }
+
+    private Set<String> filterLinks(Set<String> hrefString) {
+        Set<String> links = new HashSet<>();
+        for (String href : hrefString) {
+            // parsed once, the link is checked for scope, and queued, in its canonical form
+            String link = canonicalizer.canonicalize(href);
+            if (link != null && isInternal(link)) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Puts the given url into its canonical form, see {@link UrlCanonicalizer}
+     *
+     * @param url an absolute url
+     * @return the canonical form of the url, or null if it is not to be crawled, not being an http or https url
+     */
+    String canonicalize(String url) {
+        return canonicalizer.canonicalize(url);
     }
 
     private Set<String> nonRecursiveExtractor(String url, Set<String> excludeURLs)
@@ -513,131 +1762,34 @@ public class Webmuncher {
             return Collections.EMPTY_SET;
         }
 
-        Set<String> crawledURLs = new HashSet<>();
-
-        if (excludeURLs == null) {
-            excludeURLs = new HashSet<>();
-        }
-
-        Long before = new Date().getTime();
-        Document document = getDocumentFromUrl(url);
-        Long after = new Date().getTime();
-        Long loadTime = after - before;
-
-        crawledURLs.add(url);
-
-        FetchedPage firstPage = new FetchedPage();
-        firstPage.setUrl(url);
-        firstPage.setStatus(200);
-        firstPage.setHtml(document.outerHtml());
-        firstPage.setPlainText(Jsoup.parse(document.outerHtml()).text());
-        firstPage.setTitle(document.title());
-        firstPage.setLoadTime(loadTime);
-        firstPage.setSourceUrl("");
-        action.process(firstPage);
-
-        Set<Url> urls = extractAbsHref(document)
-                .stream()
-                .map(fetched -> stringToUrlWithSource(fetched, url))
-                .collect(Collectors.toSet());
-
-        while (stillToFetch(urls.stream().map(x -> x.getUrl()).collect(Collectors.toSet()), excludeURLs, crawledURLs)) {
-            for (Url toCrawl : new ArrayList<>(urls)) {
-                if (shouldBeCrawled(toCrawl.getUrl(), crawledURLs)) {
-                    FetchedPage fetchedPage = new FetchedPage();
-                    try {
-                        document = getDocumentFromUrl(toCrawl.getUrl());
-                        fetchedPage.setUrl(toCrawl.getUrl());
-                        fetchedPage.setStatus(200);
-                        fetchedPage.setHtml(document.outerHtml());
-                        fetchedPage.setPlainText(Jsoup.parse(document.outerHtml()).text());
-                        fetchedPage.setTitle(document.title());
-                        fetchedPage.setLoadTime(loadTime);
-                        fetchedPage.setSourceUrl(toCrawl.getSourceUrl());
-                        action.process(fetchedPage);
-
-
-                        Set<Url> urlsToFetch = extractAbsHref(document)
-                                .stream()
-                                .map(fetched -> stringToUrlWithSource(fetched, url))
-                                .collect(Collectors.toSet());
-
-                        urls.addAll(urlsToFetch);
-                        urls.remove(url);
-                        crawledURLs.add(toCrawl.getUrl());
-                    } catch (IOException e) {
-                            if (e instanceof UnsupportedMimeTypeException) {
-                                fetchedPage.setStatus(415);
-                                crawledURLs.add(toCrawl.getUrl());
-                            } else if (e instanceof SocketTimeoutException) {
-                                // it is a SocketTimeout Exception, it is probably a good idea to chill init?
-                                Thread.sleep(3000);
-                                // TODO add this link to a list of timedout url to be fetched later
-                            } else {
-                                fetchedPage.setStatus(404);
-                                crawledURLs.add(toCrawl.getUrl());
-                            }
-                            fetchedPage.setUrl(toCrawl.getUrl());
-                            fetchedPage.setSourceUrl(toCrawl.getUrl()); // TODO is it possible to find this?
-                            // the action's process is still called because
-                            // we want to save the url that were broken, for instance
-                            action.process(fetchedPage);
-                            if (errorAction != null) {
-                                errorAction.process(url, e);
-                            }
-                            logger.error("Failed to crawl {}. With error message: {}", url, e);
-                    }
-                }
-            }
+        Set<String> crawledURLs;
+        try {
+            crawlJob = new CrawlJob(this, excludeURLs);
+            crawledURLs = crawlJob.run(url);
+        } finally {
+            destroyAsync();
         }
-
-        destroyAsync();
         fireOnExit(crawledURLs);
 
         return crawledURLs;
     }
 
-    private boolean shouldBeCrawled(String toCrawl, Set<String> crawledURLs) {
-        if (crawledURLs.contains(toCrawl) || excludeURLs.contains(toCrawl)) {
-            return false;
-        }
-
-        if (!include(toCrawl)) {
-            excludeURLs.add(toCrawl);
-            // should stop processing right?
-            logger.info("Encountered {} but excluding from crawling", toCrawl);
-            return false;
-        }
-        return true;
-    }
-
-    private boolean stillToFetch(Set<String> urlsToFetch, Set<String> excludeURLs, Set<String> crawledURLs) {
-        HashSet<String> copyOfUrlsToFetch = new HashSet<>(urlsToFetch);
-        copyOfUrlsToFetch.removeAll(excludeURLs);
-        copyOfUrlsToFetch.removeAll(crawledURLs);
-        return !copyOfUrlsToFetch.isEmpty();
-    }
-
-
-    private Url stringToUrlWithSource(String fetched, String sourceUrl) {
-            Url fetchedUrl = new Url();
-            fetchedUrl.setSourceUrl(sourceUrl);
-            fetchedUrl.setUrl(fetched);
-            return fetchedUrl;
+    FetchAction getFetchAction() {
+        return action;
     }
 
-    private Set<String> filterOutExternalUrls(Set<String> urls) {
-        urls = urls.stream()
-                .filter(u -> u.contains(baseUrl))
-                .filter(u -> !u.contains("mailto"))
-                .collect(Collectors.toSet());
-
-        return urls;
+    ErrorAction getErrorAction() {
+        return errorAction;
     }
 
-    private Set<String> filterOutParamsGeneratedString(Set<String> urls) {
-        urls = urls.stream().filter(u -> !u.contains("?C=")).collect(Collectors.toSet());
-        return urls;
+    /**
+     * Checks whether the given url is on the site being crawled, as the scope has it
+     *
+     * @param url the url to check, in its canonical form
+     * @return true if the url is to be crawled along with the pages of the site
+     */
+    boolean isInternal(String url) {
+        return scope.matches(UrlCanonicalizer.host(url), baseUrl);
     }
 
 
@@ -646,9 +1798,7 @@ public class Webmuncher {
             return "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
         }
 
-        Collections.shuffle(userAgents);
-        Random random = new Random();
-        int randomIndex = random.nextInt(userAgents.size());
+        int randomIndex = ThreadLocalRandom.current().nextInt(userAgents.size());
         return userAgents.get(randomIndex);
     }
 
@@ -657,15 +1807,15 @@ public class Webmuncher {
             return "www.google.com";
         }
 
-        Collections.shuffle(referrals);
-        Random random = new Random();
-        int randomIndex = random.nextInt(referrals.size());
+        int randomIndex = ThreadLocalRandom.current().nextInt(referrals.size());
         return referrals.get(randomIndex);
     }
 
     private void setBaseUrl(String url) throws URISyntaxException {
         URI uri = new URI(url);
-        this.baseUrl = uri.getHost();
+        canonicalizer = new UrlCanonicalizer(strippedQueryParams, sortQueryParams, stripTrailingSlash);
+        String canonical = canonicalizer.canonicalize(url);
+        this.baseUrl = canonical != null ? UrlCanonicalizer.host(canonical) : uri.getHost();
     }
 
     /**
@@ -713,26 +1863,4 @@ public class Webmuncher {
             return rand.nextInt(max - min + 1) + min;
         }
     }
-
-
-    private class Url {
-        private String url;
-        private String sourceUrl;
-
-        public String getUrl() {
-            return url;
-        }
-
-        public void setUrl(String url) {
-            this.url = url;
-        }
-
-        public String getSourceUrl() {
-            return sourceUrl;
-        }
-
-        public void setSourceUrl(String sourceUrl) {
-            this.sourceUrl = sourceUrl;
-        }
-    }
 }
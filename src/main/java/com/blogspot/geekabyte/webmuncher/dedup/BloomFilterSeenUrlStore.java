@@ -0,0 +1,89 @@
+package com.blogspot.geekabyte.webmuncher.dedup;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+
+/**
+ * Implementation of {@link SeenUrlStore} backed by a Bloom filter. Its size is fixed up front, from the number of
+ * URLs expected and the acceptable rate of false positives: about 1.2 bytes per URL for a 1% rate, 1.8 bytes
+ * for 0.1%.
+ * <p>
+ * A false positive means a URL that was never seen is taken as seen, and thus not crawled. Use when missing a
+ * small fraction of the pages is fine, and memory is tight. The rate of false positives goes up once more URLs
+ * than expected have been seen.
+ *
+ * @author Dadepo Aderemi.
+ */
+public class BloomFilterSeenUrlStore implements SeenUrlStore {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long size = 0;
+
+    /**
+     * @param expectedUrls              the number of urls expected to be seen
+     * @param falsePositiveProbability the acceptable rate of false positives, e.g 0.01 for 1%
+     */
+    public BloomFilterSeenUrlStore(long expectedUrls, double falsePositiveProbability) {
+        if (expectedUrls < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("expectedUrls should be positive and falsePositiveProbability "
+                    + "should be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * ln2));
+    }
+
+    @Override
+    public boolean add(String url) {
+        long fingerprint = Fingerprints.of(url);
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = bit(fingerprint, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+        if (added) {
+            size++;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = Fingerprints.of(url);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = bit(fingerprint, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the memory taken by the filter, in bytes
+     *
+     * @return the memory taken by the filter, in bytes
+     */
+    public long footprint() {
+        return bits.length * 8L;
+    }
+
+    private long bit(long fingerprint, int i) {
+        // double hashing: the two halves of the fingerprint give the i-th hash
+        long hash = (fingerprint >>> 32) + i * (fingerprint & 0xffffffffL | 1L);
+        return (hash & Long.MAX_VALUE) % bitCount;
+    }
+}
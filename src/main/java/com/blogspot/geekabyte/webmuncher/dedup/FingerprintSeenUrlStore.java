@@ -0,0 +1,161 @@
+package com.blogspot.geekabyte.webmuncher.dedup;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Implementation of {@link SeenUrlStore} that keeps a 64-bit fingerprint of each URL, in an open-addressing
+ * table of primitive longs. Every URL costs 8 bytes, 16 bytes at most as the table is kept at most half full.
+ * <p>
+ * Two URLs sharing a fingerprint would make the crawler skip the second one, but the odds are negligible:
+ * about one in a million for a crawl of six million URLs.
+ * <p>
+ * The table is held on the heap, or with {@link #offHeap(int)} in direct memory, out of reach of the
+ * garbage collector. A direct buffer is indexed by int bytes, so off the heap the table holds at most 2^27
+ * fingerprints, where on the heap it holds 2^28. Once the table is that large, it is let fill up beyond half
+ * full, and the store throws an {@link IllegalStateException} when it is full.
+ *
+ * @author Dadepo Aderemi.
+ */
+public class FingerprintSeenUrlStore implements SeenUrlStore {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 28;
+    // a direct buffer of 2^28 longs would be 2^31 bytes, one more than an int can count
+    private static final int MAX_OFF_HEAP_CAPACITY = 1 << 27;
+
+    private final boolean offHeap;
+    private final int maxCapacity;
+    private LongBuffer table;
+    private int mask;
+    private long size = 0;
+
+    /**
+     * Creates a store held on the heap, sized for 1024 URLs. The store grows as needed
+     */
+    public FingerprintSeenUrlStore() {
+        this(1024);
+    }
+
+    /**
+     * Creates a store held on the heap. The store grows as needed
+     *
+     * @param expectedUrls the number of urls expected to be seen
+     */
+    public FingerprintSeenUrlStore(int expectedUrls) {
+        this(expectedUrls, false);
+    }
+
+    private FingerprintSeenUrlStore(int expectedUrls, boolean offHeap) {
+        this(expectedUrls, offHeap, offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_CAPACITY);
+    }
+
+    FingerprintSeenUrlStore(int expectedUrls, boolean offHeap, int maxCapacity) {
+        this.offHeap = offHeap;
+        this.maxCapacity = maxCapacity;
+        this.table = allocate(capacityFor(expectedUrls));
+        this.mask = table.capacity() - 1;
+    }
+
+    /**
+     * Creates a store held in direct memory, off the heap. The store grows as needed
+     *
+     * @param expectedUrls the number of urls expected to be seen
+     * @return the store
+     */
+    public static FingerprintSeenUrlStore offHeap(int expectedUrls) {
+        return new FingerprintSeenUrlStore(expectedUrls, true);
+    }
+
+    @Override
+    public boolean add(String url) {
+        if ((size + 1) * 2 > table.capacity()) {
+            if (table.capacity() < maxCapacity) {
+                resize(table.capacity() * 2);
+            } else if (size + 1 >= table.capacity() && !contains(url)) {
+                // one slot is left empty, for the probing of a fingerprint not in the table to end
+                throw new IllegalStateException("Seen url store is full at " + size + " urls");
+            }
+        }
+        if (insert(table, mask, Fingerprints.of(url))) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = Fingerprints.of(url);
+        for (int slot = slot(fingerprint, mask); ; slot = (slot + 1) & mask) {
+            long current = table.get(slot);
+            if (current == 0) {
+                return false;
+            }
+            if (current == fingerprint) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the memory taken by the table, in bytes
+     *
+     * @return the memory taken by the table, in bytes
+     */
+    public long footprint() {
+        return table.capacity() * 8L;
+    }
+
+    private void resize(int capacity) {
+        LongBuffer resized = allocate(capacity);
+        int resizedMask = capacity - 1;
+        for (int i = 0; i < table.capacity(); i++) {
+            long fingerprint = table.get(i);
+            if (fingerprint != 0) {
+                insert(resized, resizedMask, fingerprint);
+            }
+        }
+        table = resized;
+        mask = resizedMask;
+    }
+
+    private static boolean insert(LongBuffer table, int mask, long fingerprint) {
+        for (int slot = slot(fingerprint, mask); ; slot = (slot + 1) & mask) {
+            long current = table.get(slot);
+            if (current == 0) {
+                table.put(slot, fingerprint);
+                return true;
+            }
+            if (current == fingerprint) {
+                return false;
+            }
+        }
+    }
+
+    private static int slot(long fingerprint, int mask) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+
+    private LongBuffer allocate(int capacity) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+        }
+        return LongBuffer.allocate(capacity);
+    }
+
+    private int capacityFor(int expectedUrls) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedUrls * 2L && capacity < maxCapacity) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
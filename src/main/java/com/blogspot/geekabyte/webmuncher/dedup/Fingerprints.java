@@ -0,0 +1,37 @@
+package com.blogspot.geekabyte.webmuncher.dedup;
+
+/**
+ * 64-bit fingerprints of URLs. With a good spread over 64 bits, the odds of two URLs in a crawl of n URLs
+ * sharing a fingerprint are about n<sup>2</sup> / 2<sup>65</sup>: one in a million for a crawl of six million URLs.
+ *
+ * @author Dadepo Aderemi.
+ */
+final class Fingerprints {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Fingerprints the given url. Never returns 0, which is thus free to mark an empty slot
+     *
+     * @param url the url
+     * @return the fingerprint
+     */
+    static long of(CharSequence url) {
+        // FNV-1a over the chars, followed by the murmur3 finalizer for a good spread of the bits
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
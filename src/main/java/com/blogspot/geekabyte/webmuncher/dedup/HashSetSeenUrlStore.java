@@ -0,0 +1,32 @@
+package com.blogspot.geekabyte.webmuncher.dedup;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Implementation of {@link SeenUrlStore} that keeps the URLs in a {@link HashSet}. Exact, but every URL costs
+ * the full string plus the set entry, in the region of 100 to 200 bytes. The default.
+ *
+ * @author Dadepo Aderemi.
+ */
+public class HashSetSeenUrlStore implements SeenUrlStore {
+
+    private final Set<String> urls = new HashSet<>();
+
+    @Override
+    public boolean add(String url) {
+        return urls.add(url);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return urls.contains(url);
+    }
+
+    @Override
+    public long size() {
+        return urls.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.blogspot.geekabyte.webmuncher.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a page is larger than the maximum page size allowed, and is not to be truncated.
+ * See {@link com.blogspot.geekabyte.webmuncher.Webmuncher#setMaxPageSize(int)}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class PageTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String url;
+    private final int maxPageSize;
+
+    /**
+     * @param url         the url of the page
+     * @param maxPageSize the maximum page size, in bytes
+     */
+    public PageTooLargeException(String url, int maxPageSize) {
+        super("Page larger than " + maxPageSize + " bytes");
+        this.url = url;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * @return the url of the page
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the maximum page size, in bytes
+     */
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + ". URL=" + url;
+    }
+}
@@ -0,0 +1,38 @@
+package com.blogspot.geekabyte.webmuncher.interfaces;
+
+import com.blogspot.geekabyte.webmuncher.Webmuncher;
+
+/**
+ * Interface for the store {@link Webmuncher} uses to remember the URLs it has come across, so that each
+ * URL is only crawled once. Implementations trade exactness for memory: see the implementations in
+ * {@link com.blogspot.geekabyte.webmuncher.dedup}
+ * <p>
+ * A new store is used for each crawl, and is only ever accessed by one thread at a time.
+ *
+ * @author Dadepo Aderemi
+ */
+public interface SeenUrlStore {
+
+    /**
+     * Records the given url as seen
+     *
+     * @param url the url
+     * @return true if the url had not been seen before
+     */
+    boolean add(String url);
+
+    /**
+     * Checks if the given url has been seen
+     *
+     * @param url the url
+     * @return true if the url has been seen
+     */
+    boolean contains(String url);
+
+    /**
+     * Returns the number of urls seen
+     *
+     * @return the number of urls seen
+     */
+    long size();
+}
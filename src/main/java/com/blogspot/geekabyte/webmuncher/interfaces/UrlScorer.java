@@ -0,0 +1,24 @@
+package com.blogspot.geekabyte.webmuncher.interfaces;
+
+import com.blogspot.geekabyte.webmuncher.CrawlOrder;
+
+/**
+ * Interface for scoring the URLs still to be crawled, so the most valuable pages are crawled first.
+ * Used when the crawl order is {@link CrawlOrder#SCORE}
+ * <p>
+ * A URL is scored once, when it is queued. Scoring is done while the queue is locked, so should be quick.
+ *
+ * @author Dadepo Aderemi
+ */
+@FunctionalInterface
+public interface UrlScorer {
+
+    /**
+     * Scores the given url. URLs with higher scores are crawled first
+     *
+     * @param url   the url
+     * @param depth the number of links followed from the URL the crawl started at, to get to the url
+     * @return the score of the url
+     */
+    double score(String url, int depth);
+}
@@ -130,8 +130,14 @@ public class CSVAction implements FetchAction {
         }
     }
 
+    /**
+     * Appends the given page to the CSV file. Synchronized, as pages can be handed over from
+     * several crawling threads at the same time
+     *
+     * @param page the fetched page
+     */
     @Override
-    public void process(FetchedPage page) {
+    public synchronized void process(FetchedPage page) {
         try {
             if (isFirstPage) {
                 // Create new file and add headers
@@ -216,6 +222,11 @@ public class CSVAction implements FetchAction {
             if (name.startsWith("get")) {
                 String columnName = name.replace("get", "");
 
+                if (columnName.equals("Body") || columnName.equals("Charset")) {
+                    // the page is written out as its html or plain text, not as its bytes
+                    continue;
+                }
+
                 if (columnName.toLowerCase().equals("plainText".toLowerCase())) {
                     if (this.isPlainText()) {
                         stringBuilder.append(columnName + ",");
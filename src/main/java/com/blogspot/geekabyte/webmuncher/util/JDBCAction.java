@@ -6,6 +6,11 @@ import com.blogspot.geekabyte.webmuncher.interfaces.FetchAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -15,6 +20,10 @@ import javax.sql.DataSource;
 /**
  * Implementation of {@link FetchAction} that inserts crawled pages
  * to an SQL database.
+ * <p>
+ * The html stored is the html set on the page if it was set, by an action before this one for instance, and
+ * otherwise the body of the page as fetched, streamed to the database as it is decoded, rather than held as a
+ * string first. A byte order mark the body starts with is skipped, as it is not part of the html.
  *
  * @author Dadepo Aderemi.
  */
@@ -68,7 +77,14 @@ public class JDBCAction implements FetchAction {
             preparedStatement.setString(1, page.getTitle());
             preparedStatement.setString(2, page.getUrl());
             preparedStatement.setString(3, page.getSourceUrl());
-            preparedStatement.setString(4, page.getHtml());
+            ByteBuffer body = page.getBody();
+            if (body != null && !page.isHtmlSet()) {
+                skipByteOrderMark(body, page.getCharset());
+                preparedStatement.setCharacterStream(4,
+                        new InputStreamReader(new ByteBufferInputStream(body), page.getCharset()));
+            } else {
+                preparedStatement.setString(4, page.getHtml());
+            }
             preparedStatement.setString(5, String.valueOf(page.getStatus()));
             preparedStatement.setString(6, String.valueOf(page.getLoadTime()));
             preparedStatement.executeUpdate();
@@ -79,6 +95,67 @@ public class JDBCAction implements FetchAction {
 
     }
 
+    /**
+     * Moves the buffer past the byte order mark it starts with, if it is that of the given charset. The decoders
+     * of UTF-8, UTF-16BE and UTF-16LE would otherwise give it as a character
+     */
+    private static void skipByteOrderMark(ByteBuffer body, Charset charset) {
+        byte[] mark;
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            mark = new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+        } else if (StandardCharsets.UTF_16BE.equals(charset)) {
+            mark = new byte[]{(byte) 0xfe, (byte) 0xff};
+        } else if (StandardCharsets.UTF_16LE.equals(charset)) {
+            mark = new byte[]{(byte) 0xff, (byte) 0xfe};
+        } else {
+            return;
+        }
+        if (body.remaining() < mark.length) {
+            return;
+        }
+        for (int i = 0; i < mark.length; i++) {
+            if (body.get(body.position() + i) != mark[i]) {
+                return;
+            }
+        }
+        body.position(body.position() + mark.length);
+    }
+
+    /**
+     * Reads the bytes of a buffer, without copying them out of it first
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
     private void createTableIfNotExist(Connection connection) {
         try {
             Statement statement = connection.createStatement();
@@ -0,0 +1,133 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for adapting the number of requests per host, against a Jetty server that can only take so
+ * many at the same time
+ *
+ * @author Dadepo Aderemi.
+ */
+public class AdaptiveConcurrencyIntegrationTest {
+
+    private static final int HTTP_PORT = 50036;
+    private static final int PAGES = 40;
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger mostInFlight = new AtomicInteger();
+    private final AtomicInteger unavailable = new AtomicInteger();
+    private volatile int capacity = Integer.MAX_VALUE;
+    private Server server;
+
+    /**
+     * Serves an index linking to a number of pages, each taking a little while, and answers with a 503 when
+     * more requests than its capacity are in flight
+     */
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                int requests = inFlight.incrementAndGet();
+                try {
+                    mostInFlight.accumulateAndGet(requests, Math::max);
+                    if (requests > capacity) {
+                        unavailable.incrementAndGet();
+                        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        return;
+                    }
+                    StringBuilder links = new StringBuilder();
+                    if ("/index.html".equals(target)) {
+                        for (int i = 0; i < PAGES; i++) {
+                            links.append("<a href='/page").append(i).append(".html'>page</a>");
+                        }
+                    }
+                    Thread.sleep(20);
+                    response.setContentType("text/html;charset=utf-8");
+                    response.getWriter().println("<html><head><title>" + target + "</title></head><body>"
+                            + links + "</body></html>");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void test_limit_grows_on_a_host_that_keeps_up() throws Exception {
+        Webmuncher webmuncherSUT = newWebmuncher(new ConcurrentHashMap<>());
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(PAGES + 1, hrefs.size());
+        assertTrue(mostInFlight.get() > 1);
+        assertTrue(webmuncherSUT.getHostLimits().get("localhost") > 1);
+    }
+
+    @Test
+    public void test_limit_backs_off_on_a_host_that_struggles() throws Exception {
+        capacity = 2;
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+        Webmuncher webmuncherSUT = newWebmuncher(processed);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(PAGES + 1, hrefs.size());
+        processed.values().forEach(status -> assertEquals(200, (int) status));
+        assertTrue(unavailable.get() > 0);
+        int limit = webmuncherSUT.getHostLimits().get("localhost");
+        assertTrue("limit is " + limit, limit < 8);
+    }
+
+    @Test
+    public void test_limits_are_not_kept_by_default() throws Exception {
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(8)
+                .build();
+
+        // System under test
+        webmuncherSUT.crawl(host + "/index.html");
+
+        assertTrue(webmuncherSUT.getHostLimits().isEmpty());
+    }
+
+    private Webmuncher newWebmuncher(Map<String, Integer> processed) {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.put(page.getUrl(), page.getStatus()))
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(8)
+                .withMaxRetry(10)
+                .withRetryBackOff(50)
+                .withAdaptiveHostConcurrency(true)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.AdaptiveLimit}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class AdaptiveLimitTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void test_limit_doubles_until_congested_then_grows_by_one() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(64);
+
+        succeed(limit, 1);
+        assertEquals(2, limit.limit());
+        succeed(limit, 2);
+        assertEquals(4, limit.limit());
+
+        limit.congested(0, 10);
+        assertEquals(2, limit.limit());
+        // about one round of requests adds one
+        succeed(limit, 2);
+        assertEquals(2, limit.limit());
+        succeed(limit, 1);
+        assertEquals(3, limit.limit());
+    }
+
+    @Test
+    public void test_limit_is_capped() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(3);
+
+        succeed(limit, 10);
+
+        assertEquals(3, limit.limit());
+    }
+
+    @Test
+    public void test_congestion_of_requests_sent_before_a_decrease_counts_once() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(64);
+        succeed(limit, 7);
+
+        limit.congested(0, 100);
+        limit.congested(50, 110);
+        limit.congested(90, 120);
+
+        assertEquals(4, limit.limit());
+        limit.congested(100, 130);
+        assertEquals(2, limit.limit());
+        assertEquals(1, new AdaptiveLimit(64).limit());
+    }
+
+    @Test
+    public void test_congestion_paces_requests_until_they_go_well() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(64);
+
+        limit.congested(0, 10);
+        assertEquals(AdaptiveLimit.MIN_PACE, limit.pace());
+        limit.congested(10, 20);
+        assertEquals(2 * AdaptiveLimit.MIN_PACE, limit.pace());
+
+        succeed(limit, 1);
+        assertEquals(2 * AdaptiveLimit.MIN_PACE - AdaptiveLimit.PACE_STEP, limit.pace());
+    }
+
+    @Test
+    public void test_slow_requests_hold_the_limit() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(64);
+        succeed(limit, 1);
+
+        limit.succeeded(10 * LATENCY);
+        limit.succeeded(10 * LATENCY);
+
+        assertEquals(2, limit.limit());
+        succeed(limit, 1);
+        assertEquals(3, limit.limit());
+    }
+
+    private static void succeed(AdaptiveLimit limit, int times) {
+        for (int i = 0; i < times; i++) {
+            limit.succeeded(LATENCY);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.AdaptiveTimeouts} and the
+ * {@link com.blogspot.geekabyte.webmuncher.LatencyHistogram} it keeps per host
+ *
+ * @author Dadepo Aderemi.
+ */
+public class AdaptiveTimeoutsTest {
+
+    @Test
+    public void test_longest_timeout_applies_until_enough_requests_are_timed() throws Exception {
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(100, 10_000);
+        for (int i = 1; i < AdaptiveTimeouts.MIN_SAMPLES; i++) {
+            timeouts.responded("fast.example.com", 50);
+        }
+        assertEquals(10_000, timeouts.readTimeout("fast.example.com"));
+
+        timeouts.responded("fast.example.com", 50);
+
+        int timeout = timeouts.readTimeout("fast.example.com");
+        assertTrue("timeout is " + timeout, timeout >= 50 * AdaptiveTimeouts.FACTOR && timeout < 300);
+        // kept per host, and for connecting apart from reading
+        assertEquals(10_000, timeouts.readTimeout("slow.example.com"));
+        assertEquals(10_000, timeouts.connectTimeout("fast.example.com"));
+    }
+
+    @Test
+    public void test_timeouts_are_clamped() throws Exception {
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(500, 2000);
+        for (int i = 0; i < AdaptiveTimeouts.MIN_SAMPLES; i++) {
+            timeouts.connected("fast.example.com", 1);
+            timeouts.responded("slow.example.com", 1000);
+        }
+
+        assertEquals(500, timeouts.connectTimeout("fast.example.com"));
+        assertEquals(2000, timeouts.readTimeout("slow.example.com"));
+    }
+
+    @Test
+    public void test_timed_out_requests_raise_the_timeout() throws Exception {
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(100, 10_000);
+        for (int i = 0; i < 100; i++) {
+            timeouts.responded("host.example.com", 100);
+        }
+        int timeout = timeouts.readTimeout("host.example.com");
+
+        timeouts.readTimedOut("host.example.com", timeout);
+        timeouts.readTimedOut("host.example.com", timeout);
+
+        assertTrue(timeouts.readTimeout("host.example.com") > timeout);
+    }
+
+    @Test
+    public void test_histogram_percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        assertEquals(-1, histogram.percentile(0.99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        long median = histogram.percentile(0.5);
+        long p99 = histogram.percentile(0.99);
+
+        assertTrue("median is " + median, median >= 50 && median <= 63);
+        assertTrue("p99 is " + p99, p99 >= 99 && p99 <= 124);
+        assertEquals(100, histogram.count());
+    }
+
+    @Test
+    public void test_histogram_follows_changes_in_latency() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+
+        for (int i = 0; i < 600; i++) {
+            histogram.record(10);
+        }
+
+        assertTrue(histogram.percentile(0.99) < 1000);
+    }
+}
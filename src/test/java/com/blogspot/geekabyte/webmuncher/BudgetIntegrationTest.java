@@ -0,0 +1,99 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.callbacks.FetchExitCallback;
+import org.junit.*;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration test for stopping crawls once their budget is spent, against the {@link EndlessTestServer}
+ * which has no end of pages
+ *
+ * @author Dadepo Aderemi.
+ */
+public class BudgetIntegrationTest {
+
+    private final String host = "http://localhost:" + EndlessTestServer.HTTP_PORT;
+    private final AtomicInteger processed = new AtomicInteger();
+    private EndlessTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        testServer = new EndlessTestServer();
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_max_pages() throws Exception {
+        FetchExitCallback mockCallBack = mock(FetchExitCallback.class);
+        Webmuncher webmuncherSUT = newBuilder()
+                .withMaxPages(25)
+                .withExitCallBack(mockCallBack)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(25, hrefs.size());
+        assertEquals(25, processed.get());
+        verify(mockCallBack).callBack(hrefs);
+    }
+
+    @Test
+    public void test_max_pages_per_host() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withMaxPagesPerHost(10)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(10, hrefs.size());
+    }
+
+    @Test
+    public void test_max_bytes() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withMaxBytes(10 * 1024)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        // each page is a little over 100 bytes, and at most 4 pages are fetched past the budget
+        assertTrue(hrefs.size() > 50);
+        assertTrue(hrefs.size() < 120);
+    }
+
+    @Test
+    public void test_max_duration() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withMaxDuration(Duration.ofMillis(500))
+                .build();
+
+        // System under test
+        long before = System.currentTimeMillis();
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+        long duration = System.currentTimeMillis() - before;
+
+        assertFalse(hrefs.isEmpty());
+        assertTrue("took " + duration + "ms", duration < 2000);
+    }
+
+    private Webmuncher.Builder newBuilder() {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.incrementAndGet())
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4);
+    }
+}
@@ -0,0 +1,167 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.exceptions.FatalError;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for checkpointing a crawl and resuming it
+ *
+ * @author Dadepo Aderemi.
+ */
+public class CheckpointIntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+    private SyntheticTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        testServer = new SyntheticTestServer(64, 0);
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_resume_carries_on_interrupted_crawl() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("crawl.checkpoint");
+        Set<String> processed = ConcurrentHashMap.newKeySet();
+        AtomicInteger processedBeforeCrash = new AtomicInteger();
+        Webmuncher crashing = Webmuncher.newBuilder()
+                .withFetchAction(page -> {
+                    if (processedBeforeCrash.incrementAndGet() > 20) {
+                        throw new FatalError("crash");
+                    }
+                    processed.add(page.getUrl());
+                })
+                .withDelayInBetweenRequest(0)
+                .withCheckpoint(checkpoint)
+                .build();
+
+        try {
+            crashing.crawl(host + "/page/0.html");
+            fail("expected the crawl to be interrupted");
+        } catch (FatalError e) {
+            assertEquals(20, processed.size());
+        }
+
+        AtomicInteger processedAfterResume = new AtomicInteger();
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {
+                    processedAfterResume.incrementAndGet();
+                    assertTrue(processed.add(page.getUrl()));
+                })
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.resume(checkpoint);
+
+        assertEquals(64, hrefs.size());
+        assertEquals(64, processed.size());
+        assertEquals(44, processedAfterResume.get());
+        // only the page being processed when the crawl was interrupted is fetched twice
+        assertEquals(65, testServer.getRequests());
+    }
+
+    @Test
+    public void test_resume_of_finished_crawl_fetches_nothing() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("crawl.checkpoint");
+        Webmuncher webmuncher = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .withCheckpoint(checkpoint)
+                .build();
+        webmuncher.crawl(host + "/page/0.html");
+
+        // System under test
+        Set<String> hrefs = webmuncher.resume(checkpoint);
+
+        assertEquals(64, hrefs.size());
+        assertEquals(64, testServer.getRequests());
+    }
+
+    @Test
+    public void test_journal_drops_torn_record() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("crawl.checkpoint");
+        try (CrawlJournal journal = CrawlJournal.create(checkpoint, host + "/page/0.html")) {
+            journal.queued(new Url(host + "/page/0.html", ""));
+            journal.queued(new Url(host + "/page/1.html", host + "/page/0.html"));
+            journal.done(host + "/page/0.html");
+        }
+        long length = Files.size(checkpoint);
+        // a record cut short by a crash
+        Files.write(checkpoint, new byte[]{'Q', 0, 42, 'h'}, StandardOpenOption.APPEND);
+
+        List<String> queued = new ArrayList<>();
+        List<String> done = new ArrayList<>();
+        assertEquals(length, replay(checkpoint, queued, done));
+        assertEquals(2, queued.size());
+        assertEquals(1, done.size());
+        assertEquals(host + "/page/0.html", CrawlJournal.seed(checkpoint));
+
+        try (CrawlJournal journal = CrawlJournal.append(checkpoint, length)) {
+            journal.done(host + "/page/1.html");
+        }
+        queued.clear();
+        done.clear();
+        assertEquals(Files.size(checkpoint), replay(checkpoint, queued, done));
+        assertEquals(2, queued.size());
+        assertEquals(2, done.size());
+    }
+
+    @Test
+    public void test_journal_keeps_urls_of_any_length() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("crawl.checkpoint");
+        StringBuilder longUrl = new StringBuilder(host + "/page/0.html?q=");
+        while (longUrl.length() <= 70 * 1024) {
+            longUrl.append("\u00e9t\u00e9");
+        }
+        try (CrawlJournal journal = CrawlJournal.create(checkpoint, host + "/page/0.html")) {
+            journal.queued(new Url(longUrl.toString(), host + "/page/0.html"));
+            journal.done(longUrl.toString());
+            journal.done(host + "/page/1.html");
+        }
+
+        List<String> queued = new ArrayList<>();
+        List<String> done = new ArrayList<>();
+        assertEquals(Files.size(checkpoint), replay(checkpoint, queued, done));
+        assertEquals(1, queued.size());
+        assertEquals(longUrl.toString(), queued.get(0));
+        assertEquals(2, done.size());
+        assertEquals(longUrl.toString(), done.get(0));
+        assertEquals(host + "/page/1.html", done.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_resume_rejects_file_that_is_no_checkpoint() throws Exception {
+        Path checkpoint = folder.newFile().toPath();
+        Files.write(checkpoint, "not a checkpoint".getBytes());
+
+        new Webmuncher(page -> {}).resume(checkpoint);
+    }
+
+    private long replay(Path checkpoint, List<String> queued, List<String> done) throws IOException {
+        return CrawlJournal.replay(checkpoint, url -> queued.add(url.getUrl()), done::add);
+    }
+}
@@ -0,0 +1,184 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.FetchAction;
+import com.blogspot.geekabyte.webmuncher.interfaces.callbacks.FetchExitCallback;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration test for crawling with more than one page fetched at the same time
+ *
+ * @author Dadepo Aderemi.
+ */
+public class ConcurrentCrawlIntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+    private SyntheticTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        testServer = new SyntheticTestServer(64, 50);
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_concurrent_crawl_fetches_every_page_once() throws Exception {
+        AtomicInteger processed = new AtomicInteger();
+        FetchExitCallback mockCallBack = mock(FetchExitCallback.class);
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.incrementAndGet())
+                .withExitCallBack(mockCallBack)
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(8)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, hrefs.size());
+        assertEquals(64, processed.get());
+        assertEquals(64, testServer.getRequests());
+        assertTrue(testServer.getMaxInFlight() > 1);
+        assertTrue(testServer.getMaxInFlight() <= 8);
+        verify(mockCallBack).callBack(anySet());
+    }
+
+    @Test
+    public void test_default_crawl_fetches_one_page_at_a_time() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = new Webmuncher(mockAction);
+        webmuncherSUT.setDelay(0);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, hrefs.size());
+        assertEquals(1, testServer.getMaxInFlight());
+    }
+
+    @Test
+    public void test_virtual_threads_caps_requests_in_flight() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(mockAction)
+                .withDelayInBetweenRequest(0)
+                .withVirtualThreads(true)
+                .withConcurrency(16)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, hrefs.size());
+        verify(mockAction, times(64)).process(any(FetchedPage.class));
+        assertTrue(testServer.getMaxInFlight() > 1);
+        assertTrue(testServer.getMaxInFlight() <= 16);
+    }
+
+    @Test
+    public void test_crawl_with_disk_frontier() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(mockAction)
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .withDiskFrontier(folder.getRoot().toPath(), 2)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, hrefs.size());
+        assertEquals(64, testServer.getRequests());
+        verify(mockAction, times(64)).process(any(FetchedPage.class));
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void test_async_crawl_can_be_composed() throws Exception {
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(8)
+                .build();
+
+        // System under test
+        CompletableFuture<Integer> crawled = webmuncherSUT.crawlAsync(host + "/page/0.html").thenApply(Set::size);
+
+        assertEquals(Integer.valueOf(64), crawled.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_cancelling_async_crawl_stops_it() throws Exception {
+        Webmuncher webmuncherSUT = new Webmuncher(page -> {});
+        webmuncherSUT.setDelay(0);
+
+        // System under test
+        CompletableFuture<Set<String>> crawl = webmuncherSUT.crawlAsync(host + "/page/0.html");
+        Thread.sleep(300);
+        crawl.cancel(true);
+        Thread.sleep(300);
+        int requests = testServer.getRequests();
+        Thread.sleep(300);
+
+        assertTrue(crawl.isCancelled());
+        assertTrue(requests < 64);
+        assertEquals(requests, testServer.getRequests());
+    }
+
+    @Test
+    public void test_pages_in_flight_when_crawl_is_cancelled_leave_disk_frontier_alone() throws Exception {
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(8)
+                .withParseThreads(2)
+                .withDiskFrontier(folder.getRoot().toPath(), 1)
+                .build();
+
+        // System under test
+        CompletableFuture<Set<String>> crawl = webmuncherSUT.crawlAsync(host + "/page/0.html");
+        Thread.sleep(175);
+        crawl.cancel(true);
+        // the pages being fetched when the crawl was cancelled come back, and their links are found
+        Thread.sleep(300);
+
+        assertTrue(crawl.isCancelled());
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void test_concurrent_crawl_is_faster() throws Exception {
+        Webmuncher sequential = new Webmuncher(page -> {});
+        sequential.setDelay(0);
+        long before = System.currentTimeMillis();
+        sequential.crawl(host + "/page/0.html");
+        long sequentialTime = System.currentTimeMillis() - before;
+
+        Webmuncher concurrent = new Webmuncher(page -> {});
+        concurrent.setDelay(0);
+        concurrent.setConcurrency(8);
+        before = System.currentTimeMillis();
+        concurrent.crawl(host + "/page/0.html");
+        long concurrentTime = System.currentTimeMillis() - before;
+
+        assertTrue("expected " + concurrentTime + "ms to be well under " + sequentialTime + "ms",
+                concurrentTime * 2 < sequentialTime);
+    }
+}
@@ -0,0 +1,138 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for the order pages are crawled in, and for the maximum depth crawled.
+ * Page n of the {@link SyntheticTestServer} is at depth log2(n + 1)
+ *
+ * @author Dadepo Aderemi.
+ */
+public class CrawlOrderIntegrationTest {
+
+    private static final Pattern PAGE = Pattern.compile(".*/page/(\\d+)\\.html");
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+    private final List<Integer> crawled = new CopyOnWriteArrayList<>();
+    private SyntheticTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        testServer = new SyntheticTestServer(64, 0);
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_max_depth() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withMaxDepth(3)
+                .withConcurrency(4)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+        // 1 + 2 + 4 + 8 pages
+        assertEquals(15, hrefs.size());
+        assertTrue(crawled.stream().allMatch(page -> page < 15));
+    }
+
+    @Test
+    public void test_breadth_first() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withCrawlOrder(CrawlOrder.BREADTH_FIRST)
+                .build();
+
+        // System under test
+        webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, crawled.size());
+        List<Integer> depths = crawled.stream().map(this::depth).collect(Collectors.toList());
+        assertEquals(depths.stream().sorted().collect(Collectors.toList()), depths);
+    }
+
+    @Test
+    public void test_urls_are_scored_once_while_host_is_waited_for() throws Exception {
+        testServer.setCrawlDelay("0.01");
+        AtomicInteger scored = new AtomicInteger();
+        Webmuncher webmuncherSUT = newBuilder()
+                .withRespectRobotsTxt(true)
+                .withUrlScorer((url, depth) -> {
+                    scored.incrementAndGet();
+                    return 0;
+                })
+                .build();
+
+        // System under test
+        webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, crawled.size());
+        // every page but the first is queued once, none of them being sent back to the frontier
+        assertEquals(63, scored.get());
+    }
+
+    @Test
+    public void test_match_pattern_order() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withCrawlOrder(CrawlOrder.MATCH_PATTERN)
+                .build();
+        // even pages first
+        webmuncherSUT.match(".*/page/\\d*[02468]\\.html", ".*");
+
+        // System under test
+        webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, crawled.size());
+        // each even page links to an even page, which is then crawled before the odd pages already found
+        assertEquals(Arrays.asList(0, 2, 6, 14, 30, 62), crawled.subList(0, 6));
+    }
+
+    @Test
+    public void test_score_order() throws Exception {
+        Webmuncher webmuncherSUT = newBuilder()
+                .withUrlScorer((url, depth) -> page(url) % 3 == 0 ? 1 : 0)
+                .build();
+
+        // System under test
+        webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(64, crawled.size());
+        assertEquals(CrawlOrder.SCORE, webmuncherSUT.getCrawlOrder());
+        // a multiple of 3 is crawled as soon as it is found, right after the page linking to it
+        for (int page = 3; page < 64; page += 3) {
+            assertEquals(crawled.indexOf((page - 1) / 2) + 1, crawled.indexOf(page));
+        }
+    }
+
+    private Webmuncher.Builder newBuilder() {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> crawled.add(page(page.getUrl())))
+                .withDelayInBetweenRequest(0);
+    }
+
+    private int page(String url) {
+        Matcher matcher = PAGE.matcher(url);
+        assertTrue(matcher.matches());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private int depth(int page) {
+        return 31 - Integer.numberOfLeadingZeros(page + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.DiskUrlQueue}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class DiskUrlQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_urls_come_out_in_order_across_memory_and_disk() throws Exception {
+        DiskUrlQueue queue = new DiskUrlQueue(folder.getRoot().toPath(), 3, 256);
+
+        for (int i = 0; i < 100; i++) {
+            queue.add(url(i));
+        }
+        assertEquals(100, queue.size());
+        assertEquals(97, queue.onDisk());
+
+        // interleave adds and polls, so reads and writes cross segments
+        for (int i = 0; i < 100; i++) {
+            assertEquals(url(i), queue.poll());
+            queue.add(url(100 + i));
+        }
+        for (int i = 100; i < 200; i++) {
+            Url url = queue.poll();
+            assertEquals(url(i), url);
+            assertEquals("http://localhost/source/" + i + ".html", url.getSourceUrl());
+            assertEquals(i % 7, url.getDepth());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        queue.close();
+    }
+
+    @Test
+    public void test_segment_files_are_deleted() throws Exception {
+        DiskUrlQueue queue = new DiskUrlQueue(folder.getRoot().toPath(), 1, 256);
+        for (int i = 0; i < 100; i++) {
+            queue.add(url(i));
+        }
+        for (int i = 0; i < 90; i++) {
+            queue.poll();
+        }
+        File frontierDirectory = folder.getRoot().listFiles()[0];
+        assertTrue(frontierDirectory.listFiles().length < 5);
+
+        queue.close();
+
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void test_url_too_long_for_a_segment_is_not_accepted() throws Exception {
+        DiskUrlQueue queue = new DiskUrlQueue(folder.getRoot().toPath(), 1, 256);
+        StringBuilder address = new StringBuilder("http://localhost/");
+        while (address.length() < 256) {
+            address.append("long/");
+        }
+        Url tooLong = new Url(address.toString(), "http://localhost/index.html");
+
+        assertTrue(queue.accepts(url(0)));
+        assertFalse(queue.accepts(tooLong));
+        // nor is it on the heap, where any url is
+        assertTrue(new InMemoryUrlQueue().accepts(tooLong));
+        queue.close();
+    }
+
+    @Test
+    public void test_millions_of_urls_with_a_small_head() throws Exception {
+        int urls = 2_000_000;
+        DiskUrlQueue queue = new DiskUrlQueue(folder.getRoot().toPath(), 1000);
+
+        for (int i = 0; i < urls; i++) {
+            queue.add(url(i));
+        }
+        assertEquals(urls - 1000, queue.onDisk());
+        for (int i = 0; i < urls; i++) {
+            assertEquals(url(i).getUrl(), queue.poll().getUrl());
+        }
+        assertNull(queue.poll());
+        queue.close();
+    }
+
+    private Url url(int number) {
+        return new Url("http://localhost/page/" + number + ".html", "http://localhost/source/" + number + ".html",
+                number % 7);
+    }
+}
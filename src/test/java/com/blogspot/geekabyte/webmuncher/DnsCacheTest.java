@@ -0,0 +1,111 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.DnsCache}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class DnsCacheTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<String> lookups = new CopyOnWriteArrayList<>();
+    private final DnsCache.Resolver resolver = host -> {
+        lookups.add(host);
+        if (host.endsWith(".invalid")) {
+            throw new UnknownHostException(host);
+        }
+        return new InetAddress[]{InetAddress.getLoopbackAddress()};
+    };
+
+    @Test
+    public void test_host_is_looked_up_once_while_fresh() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, MINUTE, MINUTE)) {
+            dns.preResolve("a.example.com");
+            awaitLookups(1);
+            dns.preResolve("a.example.com");
+            dns.preResolve("b.example.com");
+            awaitLookups(2);
+            dns.check("a.example.com");
+        }
+
+        assertEquals(2, lookups.size());
+    }
+
+    @Test
+    public void test_host_is_looked_up_again_once_stale() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, 0, MINUTE)) {
+            dns.preResolve("a.example.com");
+            awaitLookups(1);
+            dns.preResolve("a.example.com");
+            awaitLookups(2);
+        }
+    }
+
+    @Test
+    public void test_host_not_found_fails_without_lookup() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, MINUTE, MINUTE)) {
+            dns.preResolve("gone.invalid");
+            awaitLookups(1);
+            try {
+                dns.check("gone.invalid");
+                fail("expected the host to be remembered as not found");
+            } catch (UnknownHostException e) {
+                assertTrue(e.getMessage().startsWith("gone.invalid"));
+            }
+            dns.preResolve("gone.invalid");
+        }
+
+        assertEquals(1, lookups.size());
+    }
+
+    @Test
+    public void test_host_not_found_is_forgotten() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, MINUTE, 0)) {
+            dns.notFound("gone.invalid");
+            dns.check("gone.invalid");
+        }
+    }
+
+    @Test
+    public void test_fetch_of_unknown_host_is_remembered() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, MINUTE, MINUTE)) {
+            HttpFetcher fetcher = new HttpFetcher(new HttpFetcher.Options().withDns(dns));
+            try {
+                fetcher.fetch("http://no-such-host.invalid/index.html");
+                fail("expected the host not to be found");
+            } catch (UnknownHostException e) {
+                // looked up by the JDK
+            }
+
+            long before = System.nanoTime();
+            try {
+                fetcher.fetch("http://no-such-host.invalid/other.html");
+                fail("expected the host not to be found");
+            } catch (UnknownHostException e) {
+                assertTrue(e.getMessage().contains("not found in a lookup"));
+            }
+            assertTrue(System.nanoTime() - before < TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private void awaitLookups(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lookups.size() < count) {
+            assertTrue("expected " + count + " lookups", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        // the lookup is counted before it is cached
+        Thread.sleep(20);
+    }
+}
@@ -0,0 +1,97 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.FetchedPage}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class FetchedPageTest {
+
+    @Test
+    public void test_content_is_worked_out_from_document() throws Exception {
+        Document document = Jsoup.parse("<html><head><title>Title</title></head>"
+                + "<body><p>Some <b>text</b></p></body></html>", "http://localhost/");
+        FetchedPage page = new FetchedPage();
+
+        // System under test
+        page.setDocument(() -> document);
+
+        assertEquals("Title", page.getTitle());
+        assertEquals(document.outerHtml(), page.getHtml());
+        assertEquals(Jsoup.parse(document.outerHtml()).text(), page.getPlainText());
+        assertSame(page.getHtml(), page.getHtml());
+    }
+
+    @Test
+    public void test_content_set_is_kept() throws Exception {
+        FetchedPage page = new FetchedPage();
+        page.setDocument(() -> Jsoup.parse("<title>Parsed</title>"));
+
+        // System under test
+        page.setTitle("Set");
+
+        assertEquals("Set", page.getTitle());
+        assertNull(new FetchedPage().getHtml());
+    }
+
+    @Test
+    public void test_body_is_read_only_and_not_copied() throws Exception {
+        byte[] bytes = "<p>body</p>".getBytes(StandardCharsets.UTF_8);
+        FetchedPage page = new FetchedPage();
+        page.setBody(ByteBuffer.wrap(bytes));
+
+        // System under test
+        ByteBuffer body = page.getBody();
+
+        assertTrue(body.isReadOnly());
+        body.get(new byte[4]);
+        assertEquals(0, page.getBody().position());
+        bytes[0] = '[';
+        assertEquals('[', page.getBody().get(0));
+        assertNull(new FetchedPage().getBody());
+    }
+
+    @Test
+    public void test_charset_is_detected() throws Exception {
+        assertEquals(StandardCharsets.ISO_8859_1, charsetOf("ISO-8859-1", "<meta charset='utf-8'>"));
+        assertEquals(StandardCharsets.ISO_8859_1, charsetOf(null, "<head><meta charset=\"iso-8859-1\">"));
+        assertEquals(Charset.forName("windows-1252"), charsetOf(null,
+                "<META http-equiv='Content-Type' content='text/html; charset=windows-1252'>"));
+        assertEquals(StandardCharsets.UTF_8, charsetOf(null, "<meta charset='no-such-charset'>"));
+        assertEquals(StandardCharsets.UTF_8, charsetOf("no-such-charset", "<p>text</p>"));
+    }
+
+    private static Charset charsetOf(String given, String body) {
+        return new FetchResponse("http://localhost/", 200, "text/html", given,
+                body.getBytes(StandardCharsets.ISO_8859_1), false, 0, null, null).detectCharset();
+    }
+
+    @Test
+    public void test_document_is_only_parsed_when_content_is_asked_for() throws Exception {
+        AtomicInteger parses = new AtomicInteger();
+        FetchedPage page = new FetchedPage();
+
+        // System under test
+        page.setDocument(() -> {
+            parses.incrementAndGet();
+            return Jsoup.parse("<title>Title</title><p>text</p>");
+        });
+
+        assertEquals(0, parses.get());
+        assertEquals("Title", page.getTitle());
+        assertNotNull(page.getHtml());
+        assertEquals("Title text", page.getPlainText());
+        assertEquals(1, parses.get());
+    }
+}
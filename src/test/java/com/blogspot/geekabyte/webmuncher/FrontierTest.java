@@ -0,0 +1,94 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.dedup.HashSetSeenUrlStore;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.Frontier}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class FrontierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_urls_are_queued_in_order_of_discovery() throws Exception {
+        Frontier frontier = new Frontier();
+
+        assertTrue(enqueue(frontier, new Url("http://localhost/one.html", "")));
+        assertTrue(enqueue(frontier, new Url("http://localhost/two.html", "")));
+
+        assertEquals("http://localhost/one.html", frontier.poll().getUrl());
+        assertEquals("http://localhost/two.html", frontier.poll().getUrl());
+        assertNull(frontier.poll());
+        assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    public void test_url_is_seen_once() throws Exception {
+        Frontier frontier = new Frontier();
+
+        assertTrue(frontier.markSeen("http://localhost/index.html"));
+        assertFalse(enqueue(frontier, new Url("http://localhost/index.html", "")));
+        assertTrue(frontier.isEmpty());
+
+        // polled urls are still remembered
+        assertTrue(enqueue(frontier, new Url("http://localhost/one.html", "")));
+        frontier.poll();
+        assertFalse(frontier.markSeen("http://localhost/one.html"));
+    }
+
+    @Test
+    public void test_url_too_long_to_be_queued_is_not_accepted() throws Exception {
+        Frontier frontier = new Frontier(new DiskUrlQueue(folder.getRoot().toPath(), 0, 64), new HashSetSeenUrlStore());
+
+        assertTrue(frontier.accepts(new Url("http://localhost/a.html", "")));
+        assertFalse(frontier.accepts(new Url("http://localhost/a/very/long/path/to/a/page/deep/down.html", "")));
+        frontier.close();
+    }
+
+    @Test
+    public void test_large_synthetic_site() throws Exception {
+        // a 100k page site where every page links to the home page, the next page and the page after
+        int pages = 100_000;
+        InMemoryUrlQueue queue = new InMemoryUrlQueue();
+        HashSetSeenUrlStore seen = new HashSetSeenUrlStore();
+        Frontier frontier = new Frontier(queue, seen);
+        enqueue(frontier, new Url(page(0), ""));
+
+        int crawled = 0;
+        Url next;
+        while ((next = frontier.poll()) != null) {
+            crawled++;
+            int current = Integer.parseInt(next.getUrl().replaceAll("\\D", ""));
+            enqueue(frontier, new Url(page(0), next.getUrl()));
+            for (int link = current + 1; link <= current + 2 && link < pages; link++) {
+                enqueue(frontier, new Url(page(link), next.getUrl()));
+            }
+            assertTrue(queue.size() <= 2);
+        }
+
+        assertEquals(pages, crawled);
+        assertEquals(pages, seen.size());
+    }
+
+    /**
+     * Queues the url the way {@link CrawlJob} does, marking it as seen first
+     */
+    private boolean enqueue(Frontier frontier, Url url) {
+        if (!frontier.accepts(url) || !frontier.markSeen(url.getUrl())) {
+            return false;
+        }
+        frontier.add(url);
+        return true;
+    }
+
+    private String page(int number) {
+        return "http://localhost/page/" + number + ".html";
+    }
+}
@@ -0,0 +1,110 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.HostScheduler}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class HostSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Url a1 = new Url("http://a.example.com/1.html", "");
+    private final Url a2 = new Url("http://a.example.com/2.html", "");
+    private final Url a3 = new Url("http://a.example.com/3.html", "");
+    private final Url b1 = new Url("http://b.example.com/1.html", "");
+
+    @Test
+    public void test_delay_is_kept_per_host() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> SECOND, 16);
+
+        assertTrue(scheduler.tryAcquire(a1, 0));
+        assertFalse(scheduler.tryAcquire(a2, 10));
+        // a delay on one host does not hold up the others
+        assertTrue(scheduler.tryAcquire(b1, 10));
+        assertTrue(scheduler.tryAcquire(a2, SECOND));
+    }
+
+    @Test
+    public void test_parked_urls_are_handed_out_when_host_is_ready() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> SECOND, 16);
+        scheduler.tryAcquire(a1, 0);
+
+        assertTrue(scheduler.park(a2));
+        assertTrue(scheduler.park(a3));
+        assertEquals(2, scheduler.parked());
+        assertEquals(SECOND - 10, scheduler.nanosUntilReady(10));
+
+        assertNull(scheduler.pollReady(10));
+        assertEquals(a2, scheduler.pollReady(SECOND));
+        assertNull(scheduler.pollReady(SECOND));
+        assertEquals(a3, scheduler.pollReady(2 * SECOND));
+        assertEquals(-1, scheduler.nanosUntilReady(2 * SECOND));
+    }
+
+    @Test
+    public void test_parked_urls_go_before_new_ones() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> SECOND, 16);
+        scheduler.tryAcquire(a1, 0);
+        scheduler.park(a2);
+
+        assertFalse(scheduler.tryAcquire(a3, SECOND));
+        assertEquals(a2, scheduler.pollReady(SECOND));
+    }
+
+    @Test
+    public void test_parking_is_bounded_per_host() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> SECOND, 1);
+        scheduler.tryAcquire(a1, 0);
+
+        assertTrue(scheduler.park(a2));
+        assertFalse(scheduler.park(a3));
+        assertTrue(scheduler.park(b1));
+    }
+
+    @Test
+    public void test_back_off_holds_off_host() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> 0L, 16);
+        scheduler.backOff(a1.getUrl(), 3 * SECOND, 0);
+
+        assertFalse(scheduler.tryAcquire(a1, SECOND));
+        assertTrue(scheduler.tryAcquire(b1, SECOND));
+        assertTrue(scheduler.tryAcquire(a1, 3 * SECOND));
+    }
+
+    @Test
+    public void test_adaptive_limit_caps_requests_in_flight() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> 0L, 16, 8);
+
+        assertTrue(scheduler.tryAcquire(a1, 0));
+        // a host starts with one request at a time
+        assertFalse(scheduler.tryAcquire(a2, 0));
+        assertTrue(scheduler.tryAcquire(b1, 0));
+        assertTrue(scheduler.park(a2));
+        assertTrue(scheduler.park(a3));
+        assertNull(scheduler.pollReady(0));
+        assertEquals(-1, scheduler.nanosUntilReady(0));
+
+        scheduler.release(a1.getUrl(), 0, false, 10);
+
+        // the limit grew to two
+        assertEquals(a2, scheduler.pollReady(10));
+        assertEquals(a3, scheduler.pollReady(10));
+        assertEquals(2, (int) scheduler.limits().get("a.example.com"));
+    }
+
+    @Test
+    public void test_limits_are_not_kept_unless_adaptive() throws Exception {
+        HostScheduler scheduler = new HostScheduler(host -> 0L, 16);
+
+        assertTrue(scheduler.tryAcquire(a1, 0));
+        assertTrue(scheduler.tryAcquire(a2, 0));
+        assertTrue(scheduler.limits().isEmpty());
+    }
+}
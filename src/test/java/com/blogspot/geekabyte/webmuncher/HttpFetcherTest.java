@@ -0,0 +1,342 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.exceptions.PageTooLargeException;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.junit.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.HttpFetcher}, against a Jetty server that counts the
+ * connections it is requested over
+ *
+ * @author Dadepo Aderemi.
+ */
+public class HttpFetcherTest {
+
+    private static final int HTTP_PORT = 50036;
+    private static final int REQUESTS = 200;
+    private static final int DOWNLOAD_SIZE = 1024 * 1024;
+    private static final int MAX_PAGE_SIZE = 64 * 1024;
+    private static final String LINK = "<a href='/page.html'>page</a>";
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong endlessBytes = new AtomicLong();
+    private final List<String> downloadRequests = Collections.synchronizedList(new ArrayList<>());
+    private Server server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                connections.add(request.getRemotePort());
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    baseRequest.setHandled(true);
+                    if ("/moved.html".equals(target)) {
+                        // to another host and scheme, as written
+                        response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
+                        response.setHeader("Location", "HTTP://127.0.0.1:" + HTTP_PORT + "/page.html");
+                    } else if ("/secure.html".equals(target)) {
+                        response.setStatus(HttpServletResponse.SC_FOUND);
+                        response.setHeader("Location", "https://localhost:" + HTTP_PORT + "/page.html");
+                    } else if ("/loop.html".equals(target)) {
+                        response.setStatus(307);
+                        response.setHeader("Location", "/loop.html");
+                    } else if ("/nowhere.html".equals(target)) {
+                        response.setStatus(HttpServletResponse.SC_MOVED_TEMPORARILY);
+                    } else if ("/missing.html".equals(target)) {
+                        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    } else if ("/image.png".equals(target)) {
+                        response.setContentType("image/png");
+                        response.getOutputStream().write(new byte[1024]);
+                    } else if ("/download".equals(target)) {
+                        downloadRequests.add(request.getMethod());
+                        response.setContentType("application/octet-stream");
+                        response.setContentLength(DOWNLOAD_SIZE);
+                        response.getOutputStream().write(new byte[DOWNLOAD_SIZE]);
+                    } else if ("/endless.html".equals(target)) {
+                        // sent chunked, with no length to tell it apart from a page of the right size
+                        response.setContentType("text/html;charset=utf-8");
+                        endlessBytes.set(0);
+                        byte[] links = String.join("", Collections.nCopies(1024, LINK))
+                                .getBytes(StandardCharsets.UTF_8);
+                        try {
+                            for (int i = 0; i < 1024; i++) {
+                                response.getOutputStream().write(links);
+                                response.flushBuffer();
+                                endlessBytes.addAndGet(links.length);
+                            }
+                        } catch (IOException e) {
+                            // the client hung up
+                        }
+                    } else if ("/sized.html".equals(target)) {
+                        response.setContentType("text/html;charset=utf-8");
+                        response.setContentLength(DOWNLOAD_SIZE);
+                        response.getOutputStream().write(new byte[DOWNLOAD_SIZE]);
+                    } else if ("/gzip.html".equals(target)) {
+                        response.setContentType("text/html;charset=utf-8");
+                        response.setHeader("Content-Encoding", "gzip");
+                        try (OutputStream out = new GZIPOutputStream(response.getOutputStream())) {
+                            out.write("<html><head><title>Zipped é</title></head></html>"
+                                    .getBytes(StandardCharsets.UTF_8));
+                        }
+                    } else if ("/latin.html".equals(target)) {
+                        response.setContentType("text/html");
+                        response.getOutputStream().write(("<html><head><meta charset='ISO-8859-1'>"
+                                + "<title>Café</title></head></html>").getBytes(StandardCharsets.ISO_8859_1));
+                    } else {
+                        if ("/slow.html".equals(target)) {
+                            Thread.sleep(50);
+                        } else if ("/stalled.html".equals(target)) {
+                            Thread.sleep(2000);
+                        }
+                        response.setContentType("text/html;charset=utf-8");
+                        response.getWriter().println("<html><head><title>" + target + "</title></head></html>");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void test_fetch_parses_page() throws Exception {
+        FetchResponse response = newFetcher(-1).fetch(host + "/page.html");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("UTF-8", response.getCharset());
+        assertEquals("/page.html", response.parse().title());
+        assertEquals(host + "/page.html", response.parse().location());
+    }
+
+    @Test
+    public void test_gzipped_body_is_inflated() throws Exception {
+        FetchResponse response = newFetcher(-1).fetch(host + "/gzip.html");
+
+        assertEquals("Zipped é", response.parse().title());
+    }
+
+    @Test
+    public void test_charset_from_meta_tag() throws Exception {
+        FetchResponse response = newFetcher(-1).fetch(host + "/latin.html");
+
+        assertNull(response.getCharset());
+        assertEquals("Café", response.parse().title());
+    }
+
+    @Test
+    public void test_error_status() throws Exception {
+        try {
+            newFetcher(-1).fetch(host + "/missing.html");
+            fail("expected the fetch to fail");
+        } catch (HttpStatusException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test(expected = UnsupportedMimeTypeException.class)
+    public void test_unsupported_content_type() throws Exception {
+        newFetcher(-1).fetch(host + "/image.png");
+    }
+
+    @Test
+    public void test_unsupported_download_is_aborted() throws Exception {
+        HttpFetcher fetcher = newFetcher(-1, false, true);
+        try {
+            fetcher.fetch(host + "/download");
+            fail("expected the fetch to fail");
+        } catch (UnsupportedMimeTypeException e) {
+            assertEquals(DOWNLOAD_SIZE, fetcher.bytesSaved());
+        }
+        // the connection closed is not reused, a new one is opened
+        assertEquals(200, fetcher.fetch(host + "/page.html").getStatus());
+    }
+
+    @Test
+    public void test_unsupported_download_is_read_to_the_end_if_not_aborted() throws Exception {
+        HttpFetcher fetcher = newFetcher(-1, false, false);
+        try {
+            fetcher.fetch(host + "/download");
+            fail("expected the fetch to fail");
+        } catch (UnsupportedMimeTypeException e) {
+            assertEquals(0, fetcher.bytesSaved());
+        }
+    }
+
+    @Test
+    public void test_head_probe_saves_get_of_unsupported_content() throws Exception {
+        HttpFetcher fetcher = newFetcher(-1, true, true);
+        try {
+            fetcher.fetch(host + "/download");
+            fail("expected the fetch to fail");
+        } catch (UnsupportedMimeTypeException e) {
+            assertEquals(DOWNLOAD_SIZE, fetcher.bytesSaved());
+        }
+
+        assertEquals(Collections.singletonList("HEAD"), downloadRequests);
+        assertEquals("/page.html", fetcher.fetch(host + "/page.html").parse().title());
+    }
+
+    @Test
+    public void test_page_too_large_is_aborted() throws Exception {
+        try {
+            newCappedFetcher(false).fetch(host + "/endless.html");
+            fail("expected the fetch to fail");
+        } catch (PageTooLargeException e) {
+            assertEquals(MAX_PAGE_SIZE, e.getMaxPageSize());
+        }
+        server.stop();
+        // no more than what was in flight when the download was aborted was sent
+        assertTrue(endlessBytes.get() < DOWNLOAD_SIZE * 16);
+    }
+
+    @Test(expected = PageTooLargeException.class)
+    public void test_page_too_large_by_its_length_is_not_downloaded() throws Exception {
+        newCappedFetcher(false).fetch(host + "/sized.html");
+    }
+
+    @Test
+    public void test_page_too_large_is_truncated() throws Exception {
+        FetchResponse response = newCappedFetcher(true).fetch(host + "/endless.html");
+
+        assertTrue(response.isTruncated());
+        assertEquals(MAX_PAGE_SIZE, response.getBody().length);
+        // the last link may be cut short
+        assertTrue(response.parse().select("a").size() >= MAX_PAGE_SIZE / LINK.length());
+    }
+
+    @Test
+    public void test_page_under_max_size_is_not_truncated() throws Exception {
+        FetchResponse response = newCappedFetcher(true).fetch(host + "/page.html");
+
+        assertFalse(response.isTruncated());
+        assertEquals("/page.html", response.parse().title());
+    }
+
+    @Test
+    public void test_charset_of_content_type() throws Exception {
+        assertEquals("UTF-8", HttpFetcher.charsetOf("text/html; charset=utf-8"));
+        assertEquals("ISO-8859-1", HttpFetcher.charsetOf("text/html;charset=\"ISO-8859-1\""));
+        assertNull(HttpFetcher.charsetOf("text/html"));
+        assertNull(HttpFetcher.charsetOf("text/html; charset=no-such-charset"));
+        assertNull(HttpFetcher.charsetOf(null));
+    }
+
+    @Test
+    public void test_connections_per_host_are_capped() throws Exception {
+        HttpFetcher fetcher = newFetcher(2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<FetchResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            responses.add(executor.submit(() -> fetcher.fetch(host + "/slow.html")));
+        }
+        for (Future<FetchResponse> response : responses) {
+            assertEquals(200, response.get().getStatus());
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(2, maxInFlight.get());
+        assertTrue(connections.size() <= 2);
+    }
+
+    /**
+     * Compares the connections fetching pages with the fetcher is done over to those fetching them with
+     * {@link Jsoup#connect(String)} is
+     */
+    @Test
+    public void test_connections_are_reused() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            Jsoup.connect(host + "/page/" + i + ".html").get();
+        }
+        int jsoupConnections = connections.size();
+        connections.clear();
+
+        HttpFetcher fetcher = newFetcher(-1);
+        for (int i = 0; i < REQUESTS; i++) {
+            // System under test
+            fetcher.fetch(host + "/page/" + i + ".html").parse();
+        }
+        int fetcherConnections = connections.size();
+
+        assertTrue(fetcherConnections <= jsoupConnections);
+        assertEquals(1, fetcherConnections);
+    }
+
+    @Test
+    public void test_adaptive_timeouts_fail_a_stalled_request_early() throws Exception {
+        HttpFetcher fetcher = new HttpFetcher(new HttpFetcher.Options()
+                .withTimeout(5000)
+                .withTimeouts(new AdaptiveTimeouts(200, 5000)));
+        for (int i = 0; i < AdaptiveTimeouts.MIN_SAMPLES; i++) {
+            fetcher.fetch(host + "/page/" + i + ".html");
+        }
+
+        long before = System.nanoTime();
+        try {
+            // System under test
+            fetcher.fetch(host + "/stalled.html");
+            fail("the stalled request should time out");
+        } catch (SocketTimeoutException e) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            assertTrue("timed out after " + elapsed + "ms", elapsed < 1500);
+        }
+    }
+
+    private HttpFetcher newFetcher(int maxConnectionsPerHost) {
+        return newFetcher(maxConnectionsPerHost, false, true);
+    }
+
+    private HttpFetcher newFetcher(int maxConnectionsPerHost, boolean headProbe, boolean abortUnsupported) {
+        return new HttpFetcher(new HttpFetcher.Options()
+                .withMaxConnectionsPerHost(maxConnectionsPerHost)
+                .withHeadProbe(headProbe)
+                .withAbortUnsupported(abortUnsupported));
+    }
+
+    private HttpFetcher newCappedFetcher(boolean truncateLargePages) {
+        return new HttpFetcher(new HttpFetcher.Options()
+                .withMaxPageSize(MAX_PAGE_SIZE)
+                .withTruncateLargePages(truncateLargePages));
+    }
+}
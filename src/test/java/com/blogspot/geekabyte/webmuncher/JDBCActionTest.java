@@ -5,6 +5,9 @@ import com.blogspot.geekabyte.webmuncher.util.JDBCAction;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.HashMap;
@@ -83,11 +86,57 @@ public class JDBCActionTest {
 
             assertNotNull(result.getString("load_time"));
             assertNotNull(result.getString("html"));
+            // stored as fetched, from the body of the page
+            assertTrue(result.getString("html").contains("<title>" + expected.get(row).get("title") + "</title>"));
             row++;
         }
 
     }
 
+    @Test
+    public void testJdbcAction_byte_order_mark_is_not_stored() throws Exception {
+        JDBCAction jdbcAction = JDBCAction.builder()
+                .setDataSource(dataSource)
+                .setTableName("marked_pages")
+                .buildAction();
+        byte[] bytes = "\ufeff<title>Marked</title>".getBytes(StandardCharsets.UTF_8);
+        FetchedPage page = new FetchedPage();
+        page.setUrl(HOST + "/marked.html");
+        page.setBody(ByteBuffer.wrap(bytes));
+        page.setCharset(StandardCharsets.UTF_8);
+
+        // System under test
+        jdbcAction.process(page);
+
+        assertEquals("<title>Marked</title>", storedHtml("marked_pages"));
+    }
+
+    @Test
+    public void testJdbcAction_html_set_is_stored_over_body() throws Exception {
+        JDBCAction jdbcAction = JDBCAction.builder()
+                .setDataSource(dataSource)
+                .setTableName("rewritten_pages")
+                .buildAction();
+        FetchedPage page = new FetchedPage();
+        page.setUrl(HOST + "/rewritten.html");
+        page.setBody(ByteBuffer.wrap("<title>Fetched</title>".getBytes(StandardCharsets.UTF_8)));
+        page.setCharset(StandardCharsets.UTF_8);
+        page.setHtml("<title>Rewritten</title>");
+
+        // System under test
+        jdbcAction.process(page);
+
+        assertEquals("<title>Rewritten</title>", storedHtml("rewritten_pages"));
+    }
+
+    private String storedHtml(String table) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            ResultSet result = connection.createStatement().executeQuery("SELECT html from " + table);
+            assertTrue(result.next());
+            return result.getString("html");
+        }
+    }
+
     @Test(expected = FatalError.class)
     public void testJdbcAction_no_dataSource() throws Exception {
 
@@ -0,0 +1,128 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.LinkScanner}: that it finds the links parsing the page
+ * finds
+ *
+ * @author Dadepo Aderemi.
+ */
+public class LinkScannerTest {
+
+    private static final String URL = "http://localhost/dir/page.html?q=1";
+
+    @Test
+    public void test_links_are_found_as_parsing_finds_them() throws Exception {
+        String html = "<!DOCTYPE html><html><head><title>Not <a href='title.html'>a link</a></title>"
+                + "<script>var s = \"<a href='script.html'>\";</script>"
+                + "<style>a[href='style.html'] {}</style></head><BODY>"
+                + "<!-- <a href='comment.html'>commented out</a> -->"
+                + "<a href=\"one.html\">one</a>"
+                + "<A HREF='../two.html' class=x>two</A>"
+                + "<a class=\"x\" href=three.html>three</a>"
+                + "<a href = \" /four.html?a=1&amp;b=2 \">four</a>"
+                + "<a href=\"?page=2\">query</a>"
+                + "<a href=\"#top\">fragment</a>"
+                + "<a href=\"http://example.com/external.html\">external</a>"
+                + "<a name=\"anchor\">no href</a>"
+                + "<abbr href=\"abbr.html\">not an a</abbr>"
+                + "<a href=\"caf&eacute;.html\" href=\"second.html\">entity</a>"
+                + "<p>1 < 2 <a href='five.html'/></p>"
+                + "</body></html>";
+
+        // System under test
+        Set<String> links = LinkScanner.scan(html.getBytes(StandardCharsets.UTF_8), "utf-8", URL);
+
+        assertEquals(parsed(html), links);
+        assertTrue(links.contains("http://localhost/two.html"));
+        assertTrue(links.contains("http://localhost/four.html?a=1&b=2"));
+        assertTrue(links.contains("http://localhost/dir/page.html?page=2"));
+        assertFalse(links.contains("http://localhost/dir/comment.html"));
+        assertFalse(links.contains("http://localhost/dir/script.html"));
+    }
+
+    @Test
+    public void test_base_href_is_resolved_against() throws Exception {
+        String html = "<html><head><base href=\"/other/\"><base href=\"/ignored/\"></head>"
+                + "<body><a href=\"one.html\">one</a></body></html>";
+
+        // System under test
+        Set<String> links = LinkScanner.scan(html.getBytes(StandardCharsets.UTF_8), null, URL);
+
+        assertEquals(new HashSet<>(Arrays.asList("http://localhost/other/one.html")), links);
+    }
+
+    @Test
+    public void test_page_cut_short_is_scanned_to_the_last_whole_tag() throws Exception {
+        String html = "<a href='one.html'>one</a><a href='tw";
+
+        // System under test
+        Set<String> links = LinkScanner.scan(html.getBytes(StandardCharsets.UTF_8), null, URL);
+
+        assertEquals(new HashSet<>(Arrays.asList("http://localhost/dir/one.html")), links);
+    }
+
+    @Test
+    public void test_only_ascii_compatible_charsets_are_scanned() throws Exception {
+        byte[] html = "<a href='one.html'>one</a>".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(LinkScanner.canScan(html, null));
+        assertTrue(LinkScanner.canScan(html, "ISO-8859-1"));
+        assertFalse(LinkScanner.canScan(html, "UTF-16"));
+        assertFalse(LinkScanner.canScan(html, "no-such-charset"));
+        assertFalse(LinkScanner.canScan(new byte[]{(byte) 0xff, (byte) 0xfe, '<', 0}, null));
+    }
+
+    @Test
+    public void test_mocksite_links_are_found_as_parsing_finds_them() throws Exception {
+        try (Stream<Path> files = Files.list(Paths.get("src/test/resources/mocksite"))) {
+            for (Path file : files.sorted().collect(Collectors.toList())) {
+                byte[] page = Files.readAllBytes(file);
+                String url = "http://localhost:50036/mocksite/" + file.getFileName();
+
+                // System under test
+                Set<String> links = LinkScanner.scan(page, null, url);
+
+                assertEquals(parsed(new String(page, StandardCharsets.UTF_8), url), links);
+            }
+        }
+    }
+
+    private static Set<String> parsed(String html) {
+        return parsed(html, URL);
+    }
+
+    private static Set<String> parsed(String html, String url) {
+        return links(Jsoup.parse(html, url));
+    }
+
+    /**
+     * The links as {@link Webmuncher#extractAbsHref(Document)} finds them, before they are filtered
+     */
+    private static Set<String> links(Document document) {
+        Set<String> links = new HashSet<>();
+        for (Element link : document.body().getElementsByTag("a")) {
+            // an a without a href gives an empty one, which is filtered out with the external links
+            if (link.hasAttr("href")) {
+                links.add(link.attr("abs:href"));
+            }
+        }
+        return links;
+    }
+}
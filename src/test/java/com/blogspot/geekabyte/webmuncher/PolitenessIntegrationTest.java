@@ -0,0 +1,61 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for the delay between requests to the same host
+ *
+ * @author Dadepo Aderemi.
+ */
+public class PolitenessIntegrationTest {
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+    private SyntheticTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        testServer = new SyntheticTestServer(3, 0);
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_delay_is_honoured_even_with_concurrency() throws Exception {
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(1)
+                .withConcurrency(4)
+                .build();
+
+        long before = System.currentTimeMillis();
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+        long elapsed = System.currentTimeMillis() - before;
+
+        assertEquals(3, hrefs.size());
+        assertEquals(1, testServer.getMaxInFlight());
+        assertTrue("crawl took " + elapsed + "ms", elapsed >= 2000);
+    }
+
+    @Test
+    public void test_random_delay_is_honoured() throws Exception {
+        Webmuncher webmuncherSUT = new Webmuncher(page -> {});
+        webmuncherSUT.setDelay(1, 2);
+
+        long before = System.currentTimeMillis();
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+        long elapsed = System.currentTimeMillis() - before;
+
+        assertEquals(3, hrefs.size());
+        assertTrue("crawl took " + elapsed + "ms", elapsed >= 2000);
+    }
+}
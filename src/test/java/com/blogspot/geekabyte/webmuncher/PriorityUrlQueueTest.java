@@ -0,0 +1,49 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.PriorityUrlQueue}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class PriorityUrlQueueTest {
+
+    @Test
+    public void test_highest_score_comes_out_first() throws Exception {
+        PriorityUrlQueue queue = new PriorityUrlQueue((url, depth) -> url.contains("/news/") ? 1 : 0);
+
+        queue.add(url("/archive/1.html", 1));
+        queue.add(url("/news/1.html", 3));
+        queue.add(url("/archive/2.html", 1));
+        queue.add(url("/news/2.html", 2));
+
+        assertEquals(4, queue.size());
+        assertEquals(url("/news/2.html", 2), queue.poll());
+        assertEquals(url("/news/1.html", 3), queue.poll());
+        assertEquals(url("/archive/1.html", 1), queue.poll());
+        assertEquals(url("/archive/2.html", 1), queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void test_same_score_comes_out_breadth_first() throws Exception {
+        PriorityUrlQueue queue = new PriorityUrlQueue((url, depth) -> 0);
+
+        queue.add(url("/3.html", 3));
+        queue.add(url("/1.html", 1));
+        queue.add(url("/2a.html", 2));
+        queue.add(url("/2b.html", 2));
+
+        assertEquals(1, queue.poll().getDepth());
+        assertEquals(url("/2a.html", 2), queue.poll());
+        assertEquals(url("/2b.html", 2), queue.poll());
+        assertEquals(3, queue.poll().getDepth());
+    }
+
+    private Url url(String path, int depth) {
+        return new Url("http://localhost" + path, "", depth);
+    }
+}
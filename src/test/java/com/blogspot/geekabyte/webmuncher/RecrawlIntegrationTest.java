@@ -0,0 +1,231 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for recrawling with a {@link com.blogspot.geekabyte.webmuncher.RecrawlCache}, against a Jetty
+ * server that answers conditional requests
+ *
+ * @author Dadepo Aderemi.
+ */
+public class RecrawlIntegrationTest {
+
+    private static final int HTTP_PORT = 50036;
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 08:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean plainChanged = false;
+    private Server server;
+    private Path cache;
+
+    @Before
+    public void startServer() throws Exception {
+        cache = folder.getRoot().toPath().resolve("recrawl.cache");
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                requests.incrementAndGet();
+                baseRequest.setHandled(true);
+                switch (target) {
+                    case "/index.html":
+                        withEtag(request, response, "\"index-1\"",
+                                "<a href='/etag.html'>etag</a><a href='/modified.html'>modified</a>"
+                                        + "<a href='/plain.html'>plain</a>");
+                        break;
+                    case "/etag.html":
+                        withEtag(request, response, "\"etag-1\"", "<a href='/deep.html'>deep</a>");
+                        break;
+                    case "/modified.html":
+                        if (LAST_MODIFIED.equals(request.getHeader("If-Modified-Since"))) {
+                            notModified.incrementAndGet();
+                            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                            return;
+                        }
+                        response.setHeader("Last-Modified", LAST_MODIFIED);
+                        page(response, "Modified", "");
+                        break;
+                    case "/plain.html":
+                        page(response, "Plain", plainChanged ? "<a href='/new.html'>new</a>" : "");
+                        break;
+                    case "/deep.html":
+                    case "/new.html":
+                        page(response, target, "");
+                        break;
+                    default:
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void test_recrawl_skips_unchanged_pages() throws Exception {
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+        Webmuncher webmuncher = newWebmuncher(processed, false);
+        webmuncher.crawl(host + "/index.html");
+        assertEquals(5, processed.size());
+        processed.clear();
+        requests.set(0);
+
+        // System under test
+        Set<String> hrefs = newWebmuncher(processed, false).crawl(host + "/index.html");
+
+        assertEquals(5, hrefs.size());
+        assertTrue(processed.isEmpty());
+        assertEquals(5, requests.get());
+        // the plain and deep pages have no validators, and are told unchanged by their hash
+        assertEquals(3, notModified.get());
+    }
+
+    @Test
+    public void test_recrawl_processes_changed_pages() throws Exception {
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+        newWebmuncher(processed, false).crawl(host + "/index.html");
+        processed.clear();
+        plainChanged = true;
+
+        // System under test
+        Set<String> hrefs = newWebmuncher(processed, false).crawl(host + "/index.html");
+
+        assertEquals(6, hrefs.size());
+        assertEquals(2, processed.size());
+        assertEquals(200, (int) processed.get(host + "/plain.html"));
+        assertEquals(200, (int) processed.get(host + "/new.html"));
+    }
+
+    @Test
+    public void test_recrawl_processes_unchanged_pages_if_asked() throws Exception {
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+        newWebmuncher(processed, false).crawl(host + "/index.html");
+        processed.clear();
+
+        // System under test
+        newWebmuncher(processed, true).crawl(host + "/index.html");
+
+        assertEquals(5, processed.size());
+        processed.values().forEach(status -> assertEquals(304, (int) status));
+    }
+
+    @Test
+    public void test_crawl_without_cache_is_unconditional() throws Exception {
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+        Webmuncher webmuncher = Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.put(page.getUrl(), page.getStatus()))
+                .withDelayInBetweenRequest(0)
+                .build();
+        webmuncher.crawl(host + "/index.html");
+
+        // System under test
+        webmuncher.crawl(host + "/index.html");
+
+        assertEquals(5, processed.size());
+        assertEquals(0, notModified.get());
+    }
+
+    @Test
+    public void test_cache_keeps_urls_of_any_length() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("long.cache");
+        StringBuilder longUrl = new StringBuilder(host + "/page.html?q=");
+        while (longUrl.length() <= 70 * 1024) {
+            longUrl.append("\u00e9t\u00e9");
+        }
+        RecrawlCache cache = RecrawlCache.load(file);
+        cache.put(longUrl.toString(), "\"etag\"", null, 42, Arrays.asList(longUrl + "&link", host + "/a.html"));
+
+        // System under test
+        cache.save();
+
+        RecrawlCache.Entry entry = RecrawlCache.load(file).get(longUrl.toString());
+        assertNotNull(entry);
+        assertEquals("\"etag\"", entry.getEtag());
+        assertNull(entry.getLastModified());
+        assertEquals(42, entry.getContentHash());
+        assertEquals(Arrays.asList(longUrl + "&link", host + "/a.html"), entry.getLinks());
+    }
+
+    @Test
+    public void test_cache_of_previous_format_is_read() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("v2.cache");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x574d5232);
+            out.writeInt(1);
+            out.writeUTF(host + "/index.html");
+            out.writeBoolean(false);
+            out.writeBoolean(true);
+            out.writeUTF("Tue, 15 Nov 1994 12:45:26 GMT");
+            out.writeLong(7);
+            out.writeLong(1000);
+            out.writeInt(1);
+            out.writeUTF(host + "/a.html");
+        }
+
+        // System under test
+        RecrawlCache.Entry entry = RecrawlCache.load(file).get(host + "/index.html");
+
+        assertNotNull(entry);
+        assertNull(entry.getEtag());
+        assertEquals("Tue, 15 Nov 1994 12:45:26 GMT", entry.getLastModified());
+        assertEquals(7, entry.getContentHash());
+        assertEquals(1000, entry.getFetchedAt());
+        assertEquals(Arrays.asList(host + "/a.html"), entry.getLinks());
+    }
+
+    private Webmuncher newWebmuncher(Map<String, Integer> processed, boolean processUnchangedPages) {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.put(page.getUrl(), page.getStatus()))
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(2)
+                .withRecrawlCache(cache)
+                .withProcessUnchangedPages(processUnchangedPages)
+                .build();
+    }
+
+    private void withEtag(HttpServletRequest request, HttpServletResponse response, String etag, String links)
+            throws IOException {
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            notModified.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setHeader("ETag", etag);
+        page(response, etag, links);
+    }
+
+    private void page(HttpServletResponse response, String title, String links) throws IOException {
+        response.setContentType("text/html;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().println("<html><head><title>" + title + "</title></head><body>" + links
+                + "</body></html>");
+    }
+}
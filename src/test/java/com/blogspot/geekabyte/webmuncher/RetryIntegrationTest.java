@@ -0,0 +1,123 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.interfaces.ErrorAction;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration test for retrying pages whose fetch failed
+ *
+ * @author Dadepo Aderemi.
+ */
+public class RetryIntegrationTest {
+
+    private static final int HTTP_PORT = 50036;
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private Server server;
+
+    /**
+     * Serves an index linking to /slow.html, which takes longer than the time out for its first request, to
+     * /unavailable.html, which is unavailable for its first two requests, and to /broken.html, which always fails
+     */
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                int count = requests.computeIfAbsent(target, t -> new AtomicInteger()).incrementAndGet();
+                baseRequest.setHandled(true);
+                response.setContentType("text/html;charset=utf-8");
+                if ("/slow.html".equals(target) && count == 1) {
+                    try {
+                        Thread.sleep(1500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if ("/unavailable.html".equals(target) && count <= 2) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    return;
+                } else if ("/broken.html".equals(target)) {
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().println("<html><head><title>" + target + "</title></head><body>"
+                        + "<a href='/slow.html'>slow</a><a href='/unavailable.html'>unavailable</a>"
+                        + "<a href='/broken.html'>broken</a></body></html>");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void test_transient_failures_are_retried() throws Exception {
+        ErrorAction mockErrorAction = mock(ErrorAction.class);
+        AtomicInteger processed = new AtomicInteger();
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.incrementAndGet())
+                .withErrorAction(mockErrorAction)
+                .withDelayInBetweenRequest(0)
+                .withRequestTimeOut(1)
+                .withMaxRetry(2)
+                .withRetryBackOff(100)
+                .withConcurrency(2)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(4, hrefs.size());
+        assertEquals(4, processed.get());
+        assertEquals(2, requests.get("/slow.html").get());
+        assertEquals(3, requests.get("/unavailable.html").get());
+        // given up on after the retries
+        assertEquals(3, requests.get("/broken.html").get());
+        verify(mockErrorAction).process(eq(host + "/broken.html"), any(IOException.class));
+        verifyNoMoreInteractions(mockErrorAction);
+    }
+
+    @Test
+    public void test_failures_are_not_retried_by_default() throws Exception {
+        Map<String, Integer> statuses = new ConcurrentHashMap<>();
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> statuses.put(page.getUrl(), page.getStatus()))
+                .withDelayInBetweenRequest(0)
+                .withRequestTimeOut(1)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        // the page that timed out is not counted as crawled
+        assertEquals(3, hrefs.size());
+        assertEquals(1, requests.get("/slow.html").get());
+        assertEquals(1, requests.get("/unavailable.html").get());
+        assertEquals(Integer.valueOf(408), statuses.get(host + "/slow.html"));
+        assertEquals(Integer.valueOf(503), statuses.get(host + "/unavailable.html"));
+        assertEquals(Integer.valueOf(500), statuses.get(host + "/broken.html"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.RetryQueue}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class RetryQueueTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Url a1 = new Url("http://a.example.com/1.html", "");
+    private final Url a2 = new Url("http://a.example.com/2.html", "");
+
+    @Test
+    public void test_back_off_doubles_with_jitter() throws Exception {
+        RetryQueue retries = new RetryQueue(10, SECOND);
+
+        for (int attempts = 0; attempts < 8; attempts++) {
+            long wait = retries.backOff(attempts);
+            long max = SECOND << attempts;
+            assertTrue(wait >= max / 2);
+            assertTrue(wait <= max);
+        }
+        assertTrue(retries.backOff(100) <= RetryQueue.MAX_BACK_OFF);
+        assertTrue(retries.backOff(100) >= RetryQueue.MAX_BACK_OFF / 2);
+    }
+
+    @Test
+    public void test_urls_are_handed_out_when_due() throws Exception {
+        RetryQueue retries = new RetryQueue(3, SECOND);
+
+        long wait = retries.retry(a1, 0);
+        retries.retry(a2, 0);
+        assertEquals(2, retries.size());
+
+        assertNull(retries.pollDue(0));
+        assertEquals(SECOND, retries.nanosUntilDue(0), SECOND / 2);
+        Url retried = retries.pollDue(SECOND);
+        assertNotNull(retried);
+        assertEquals(1, retried.getAttempts());
+        assertNotNull(retries.pollDue(SECOND));
+        assertTrue(retries.isEmpty());
+        assertEquals(-1, retries.nanosUntilDue(SECOND));
+        assertTrue(wait > 0);
+    }
+
+    @Test
+    public void test_urls_are_retried_at_most_max_retry_times() throws Exception {
+        RetryQueue retries = new RetryQueue(2, SECOND);
+
+        Url url = a1;
+        long now = 0;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            now += retries.retry(url, now);
+            url = retries.pollDue(now);
+            assertNotNull(url);
+        }
+
+        assertEquals(2, url.getAttempts());
+        assertEquals(-1, retries.retry(url, now));
+        assertTrue(retries.isEmpty());
+    }
+
+    @Test
+    public void test_postponed_url_keeps_its_attempts() throws Exception {
+        RetryQueue retries = new RetryQueue(2, SECOND);
+        retries.retry(a1, 0);
+        Url url = retries.pollDue(SECOND);
+
+        retries.postpone(url, 2 * SECOND);
+
+        assertNull(retries.pollDue(SECOND));
+        assertEquals(1, retries.pollDue(2 * SECOND).getAttempts());
+    }
+}
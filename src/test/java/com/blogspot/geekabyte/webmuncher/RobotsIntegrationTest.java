@@ -0,0 +1,143 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for keeping to robots.txt, against a Jetty server that serves one
+ *
+ * @author Dadepo Aderemi.
+ */
+public class RobotsIntegrationTest {
+
+    private static final int HTTP_PORT = 50036;
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> pageRequestTimes = Collections.synchronizedList(new ArrayList<>());
+    private volatile int robotsStatus = HttpServletResponse.SC_OK;
+    private Server server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                requests.add(target);
+                baseRequest.setHandled(true);
+                if ("/robots.txt".equals(target)) {
+                    response.setStatus(robotsStatus);
+                    response.setContentType("text/plain");
+                    response.getWriter().println("User-agent: *\nDisallow: /private/\nCrawl-delay: 0.2");
+                    return;
+                }
+                pageRequestTimes.add(System.nanoTime());
+                response.setContentType("text/html;charset=utf-8");
+                String links;
+                switch (target) {
+                    case "/index.html":
+                        links = "<a href='/one.html'>one</a><a href='/two.html'>two</a>"
+                                + "<a href='/private/secret.html'>secret</a>";
+                        break;
+                    case "/one.html":
+                        links = "<a href='/private/other.html'>other</a>";
+                        break;
+                    default:
+                        links = "";
+                }
+                response.getWriter().println("<html><head><title>" + target + "</title></head><body>" + links
+                        + "</body></html>");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void test_disallowed_urls_are_not_crawled() throws Exception {
+        Webmuncher webmuncherSUT = newWebmuncher(true);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(3, hrefs.size());
+        assertFalse(hrefs.contains(host + "/private/secret.html"));
+        assertEquals(1, Collections.frequency(requests, "/robots.txt"));
+        assertFalse(requests.stream().anyMatch(target -> target.startsWith("/private/")));
+    }
+
+    @Test
+    public void test_crawl_delay_is_waited_in_between_requests() throws Exception {
+        Webmuncher webmuncherSUT = newWebmuncher(true);
+
+        // System under test
+        webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(3, pageRequestTimes.size());
+        for (int i = 1; i < pageRequestTimes.size(); i++) {
+            long gap = pageRequestTimes.get(i) - pageRequestTimes.get(i - 1);
+            assertTrue("requested " + gap + "ns apart", gap >= TimeUnit.MILLISECONDS.toNanos(190));
+        }
+    }
+
+    @Test
+    public void test_server_error_disallows_everything() throws Exception {
+        robotsStatus = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        Webmuncher webmuncherSUT = newWebmuncher(true);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(Collections.singleton(host + "/index.html"), hrefs);
+    }
+
+    @Test
+    public void test_missing_robots_txt_allows_everything() throws Exception {
+        robotsStatus = HttpServletResponse.SC_NOT_FOUND;
+        Webmuncher webmuncherSUT = newWebmuncher(true);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(5, hrefs.size());
+    }
+
+    @Test
+    public void test_robots_txt_is_ignored_by_default() throws Exception {
+        Webmuncher webmuncherSUT = newWebmuncher(false);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(5, hrefs.size());
+        assertFalse(requests.contains("/robots.txt"));
+    }
+
+    private Webmuncher newWebmuncher(boolean respectRobotsTxt) {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .withRespectRobotsTxt(respectRobotsTxt)
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.RobotsTxt}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class RobotsTxtTest {
+
+    private static final String ROBOTS = "# the rules\n"
+            + "User-agent: *\n"
+            + "Disallow: /private/\n"
+            + "Allow: /private/public.html\n"
+            + "Disallow: /*.cgi$\n"
+            + "Crawl-delay: 2\n"
+            + "\n"
+            + "User-agent: otherbot\n"
+            + "User-agent: Webmuncher\n"
+            + "Disallow: /tmp # not for us\n"
+            + "Disallow: /search?q=*&page=\n"
+            + "Crawl-delay: 0.5\n"
+            + "\n"
+            + "User-agent: badbot\n"
+            + "Disallow: /\n";
+
+    @Test
+    public void test_named_group_applies() throws Exception {
+        RobotsTxt robots = RobotsTxt.parse(ROBOTS, "webmuncher");
+
+        assertFalse(robots.isAllowed("/tmp/file.html"));
+        assertFalse(robots.isAllowed("/tmpfile.html"));
+        assertFalse(robots.isAllowed("/search?q=cats&page=2"));
+        assertTrue(robots.isAllowed("/search?q=cats"));
+        // the rules for all user agents do not apply
+        assertTrue(robots.isAllowed("/private/index.html"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), robots.getCrawlDelay());
+    }
+
+    @Test
+    public void test_group_for_all_applies_when_none_named() throws Exception {
+        RobotsTxt robots = RobotsTxt.parse(ROBOTS, "somebot");
+
+        assertTrue(robots.isAllowed("/"));
+        assertFalse(robots.isAllowed("/private/index.html"));
+        assertTrue(robots.isAllowed("/private/public.html"));
+        assertFalse(robots.isAllowed("/bin/script.cgi"));
+        assertTrue(robots.isAllowed("/bin/script.cgi?debug"));
+        assertTrue(robots.isAllowed("/tmp/file.html"));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), robots.getCrawlDelay());
+    }
+
+    @Test
+    public void test_longest_rule_wins_and_allow_wins_tie() throws Exception {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: *\n"
+                + "Allow: /page\n"
+                + "Disallow: /page\n"
+                + "Disallow: /*/secret\n"
+                + "Allow: /docs/secret/ok\n", "webmuncher");
+
+        assertTrue(robots.isAllowed("/page.html"));
+        assertFalse(robots.isAllowed("/docs/secret/index.html"));
+        assertTrue(robots.isAllowed("/docs/secret/ok.html"));
+    }
+
+    @Test
+    public void test_empty_disallow_allows_everything() throws Exception {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: webmuncher\n"
+                + "Disallow:\n"
+                + "\n"
+                + "User-agent: *\n"
+                + "Disallow: /\n", "webmuncher");
+
+        assertTrue(robots.isAllowed("/index.html"));
+        assertEquals(-1, robots.getCrawlDelay());
+    }
+
+    @Test
+    public void test_everything_allowed_without_rules() throws Exception {
+        RobotsTxt robots = RobotsTxt.parse("not a robots.txt", "webmuncher");
+
+        assertTrue(robots.isAllowed("/index.html"));
+        assertFalse(RobotsTxt.DISALLOW_ALL.isAllowed("/index.html"));
+    }
+}
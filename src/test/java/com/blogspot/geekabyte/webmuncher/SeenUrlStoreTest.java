@@ -0,0 +1,141 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.dedup.BloomFilterSeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.dedup.FingerprintSeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.dedup.HashSetSeenUrlStore;
+import com.blogspot.geekabyte.webmuncher.interfaces.SeenUrlStore;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link SeenUrlStore} implementations
+ *
+ * @author Dadepo Aderemi.
+ */
+public class SeenUrlStoreTest {
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+
+    @Test
+    public void test_hash_set_store() {
+        assertExact(new HashSetSeenUrlStore(), 10000);
+    }
+
+    @Test
+    public void test_fingerprint_store() {
+        // starts small so the table gets resized a few times
+        assertExact(new FingerprintSeenUrlStore(), 100000);
+    }
+
+    @Test
+    public void test_off_heap_fingerprint_store() {
+        assertExact(FingerprintSeenUrlStore.offHeap(16), 100000);
+    }
+
+    @Test
+    public void test_fingerprint_store_footprint() {
+        int urls = 1000000;
+        FingerprintSeenUrlStore store = new FingerprintSeenUrlStore(urls);
+        for (int i = 0; i < urls; i++) {
+            store.add(url(i));
+        }
+
+        assertEquals(urls, store.size());
+        // 8 bytes a fingerprint, in a table kept at most half full
+        assertTrue(store.footprint() / urls <= 16);
+        // a HashSet holds a String of about 80 bytes, and a 32 byte node, for each of these urls
+        assertTrue(store.footprint() * 5 < (long) urls * (80 + 32));
+    }
+
+    @Test
+    public void test_bloom_filter_store() {
+        int urls = 100000;
+        BloomFilterSeenUrlStore store = new BloomFilterSeenUrlStore(urls, 0.01);
+        for (int i = 0; i < urls; i++) {
+            store.add(url(i));
+        }
+        // no false negatives
+        for (int i = 0; i < urls; i++) {
+            assertTrue(store.contains(url(i)));
+            assertFalse(store.add(url(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = urls; i < 2 * urls; i++) {
+            if (store.contains(url(i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positive rate of " + falsePositives / (double) urls, falsePositives < urls * 0.02);
+        assertTrue(store.footprint() / (double) urls < 1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_bloom_filter_store_rejects_probability_out_of_range() {
+        new BloomFilterSeenUrlStore(100, 1);
+    }
+
+    @Test
+    public void test_crawl_with_fingerprint_store() throws Exception {
+        SyntheticTestServer testServer = new SyntheticTestServer(64, 0);
+        testServer.start();
+        try {
+            Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                    .withFetchAction(page -> {})
+                    .withDelayInBetweenRequest(0)
+                    .withConcurrency(4)
+                    .withSeenUrlStore(FingerprintSeenUrlStore::new)
+                    .build();
+
+            // System under test
+            Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+            assertEquals(64, hrefs.size());
+            assertEquals(64, testServer.getRequests());
+        } finally {
+            testServer.shutDown();
+        }
+    }
+
+    @Test
+    public void test_crawl_without_collecting_crawled_urls() throws Exception {
+        SyntheticTestServer testServer = new SyntheticTestServer(64, 0);
+        testServer.start();
+        try {
+            Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                    .withFetchAction(page -> {})
+                    .withDelayInBetweenRequest(0)
+                    .withCollectCrawledUrls(false)
+                    .build();
+
+            // System under test
+            Set<String> hrefs = webmuncherSUT.crawl(host + "/page/0.html");
+
+            assertTrue(hrefs.isEmpty());
+            assertEquals(64, testServer.getRequests());
+        } finally {
+            testServer.shutDown();
+        }
+    }
+
+    private void assertExact(SeenUrlStore store, int urls) {
+        for (int i = 0; i < urls; i++) {
+            assertTrue(store.add(url(i)));
+        }
+        for (int i = 0; i < urls; i++) {
+            assertTrue(store.contains(url(i)));
+            assertFalse(store.add(url(i)));
+        }
+        for (int i = urls; i < urls + 1000; i++) {
+            assertFalse(store.contains(url(i)));
+        }
+        assertEquals(urls, store.size());
+    }
+
+    private String url(int i) {
+        return "http://www.example.com/section/" + (i % 97) + "/article-" + i + ".html";
+    }
+}
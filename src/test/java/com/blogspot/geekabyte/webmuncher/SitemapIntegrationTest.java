@@ -0,0 +1,255 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for seeding crawls from sitemaps, against a Jetty server that serves a sitemap index
+ *
+ * @author Dadepo Aderemi.
+ */
+public class SitemapIntegrationTest {
+
+    private static final int HTTP_PORT = 50036;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String host = "http://localhost:" + HTTP_PORT;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean robotsListsSitemaps = true;
+    private volatile String lastmod = "2000-01-01";
+    private volatile String listedSitemap = "/index.xml";
+    private volatile boolean serving = true;
+    private Server server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                requests.add(target);
+                baseRequest.setHandled(true);
+                switch (target) {
+                    case "/robots.txt":
+                        if (!robotsListsSitemaps) {
+                            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                            return;
+                        }
+                        response.setContentType("text/plain");
+                        response.getWriter().println("User-agent: *\nDisallow:\n\nSitemap: " + host + listedSitemap);
+                        break;
+                    case "/index.xml":
+                        xml(response, "<sitemapindex xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'>"
+                                + "<sitemap><loc>" + host + "/pages.xml.gz</loc></sitemap>"
+                                + "<sitemap><loc>" + host + "/missing.xml</loc></sitemap>"
+                                + "<sitemap><loc>" + host + "/index.xml</loc></sitemap>"
+                                + "<sitemap><loc>http://127.0.0.1:" + HTTP_PORT + "/external.xml</loc></sitemap>"
+                                + "</sitemapindex>");
+                        break;
+                    case "/pages.xml.gz":
+                    case "/sitemap.xml":
+                        String urlset = "<urlset xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'>"
+                                + "<url><loc>" + host + "/one.html</loc><lastmod>" + lastmod + "</lastmod></url>"
+                                + "<url><loc>" + host + "/two.html</loc><lastmod>" + lastmod + "</lastmod></url>"
+                                + "<url><loc>http://example.com/external.html</loc></url>"
+                                + "</urlset>";
+                        if (target.endsWith(".gz")) {
+                            response.setContentType("application/x-gzip");
+                            try (OutputStream out = new GZIPOutputStream(response.getOutputStream())) {
+                                out.write(urlset.getBytes(StandardCharsets.UTF_8));
+                            }
+                        } else {
+                            xml(response, urlset);
+                        }
+                        break;
+                    case "/index.html":
+                    case "/one.html":
+                        page(response, "");
+                        break;
+                    case "/two.html":
+                        page(response, "<a href='/three.html'>three</a>");
+                        break;
+                    case "/three.html":
+                        page(response, "");
+                        break;
+                    case "/endless.xml":
+                        endless(response);
+                        break;
+                    default:
+                        if (target.startsWith("/page/")) {
+                            page(response, "");
+                            return;
+                        }
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        serving = false;
+        server.stop();
+    }
+
+    @Test
+    public void test_crawl_is_seeded_from_sitemaps_in_robots_txt() throws Exception {
+        Webmuncher webmuncherSUT = newWebmuncher(new ConcurrentHashMap<>(), null);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(4, hrefs.size());
+        assertTrue(hrefs.contains(host + "/one.html"));
+        assertTrue(hrefs.contains(host + "/three.html"));
+        assertFalse(hrefs.contains("http://example.com/external.html"));
+        // the index lists itself, but is read once
+        assertEquals(1, Collections.frequency(requests, "/index.xml"));
+        assertFalse(requests.contains("/sitemap.xml"));
+        // listed in the index, but on another host
+        assertFalse(requests.contains("/external.xml"));
+    }
+
+    @Test
+    public void test_sitemap_xml_is_read_when_robots_txt_lists_none() throws Exception {
+        robotsListsSitemaps = false;
+        Webmuncher webmuncherSUT = newWebmuncher(new ConcurrentHashMap<>(), null);
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(4, hrefs.size());
+        assertTrue(requests.contains("/sitemap.xml"));
+    }
+
+    @Test
+    public void test_pages_not_modified_since_last_fetched_are_not_fetched() throws Exception {
+        Path cache = folder.getRoot().toPath().resolve("recrawl.cache");
+        newWebmuncher(new ConcurrentHashMap<>(), cache).crawl(host + "/index.html");
+        requests.clear();
+        Map<String, Integer> processed = new ConcurrentHashMap<>();
+
+        // System under test
+        Set<String> hrefs = newWebmuncher(processed, cache).crawl(host + "/index.html");
+
+        assertEquals(4, hrefs.size());
+        assertFalse(requests.contains("/one.html"));
+        assertFalse(requests.contains("/two.html"));
+        // linked from a page not fetched, so followed from the links it had when last fetched
+        assertTrue(requests.contains("/three.html"));
+        assertEquals(304, (int) processed.get(host + "/one.html"));
+    }
+
+    @Test
+    public void test_pages_modified_since_last_fetched_are_fetched() throws Exception {
+        Path cache = folder.getRoot().toPath().resolve("recrawl.cache");
+        newWebmuncher(new ConcurrentHashMap<>(), cache).crawl(host + "/index.html");
+        requests.clear();
+        lastmod = "2100-01-01";
+
+        // System under test
+        newWebmuncher(new ConcurrentHashMap<>(), cache).crawl(host + "/index.html");
+
+        assertTrue(requests.contains("/one.html"));
+        assertTrue(requests.contains("/two.html"));
+    }
+
+    @Test
+    public void test_sitemaps_are_not_read_by_default() throws Exception {
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        assertEquals(Collections.singleton(host + "/index.html"), hrefs);
+        assertFalse(requests.contains("/robots.txt"));
+    }
+
+    @Test
+    public void test_crawl_stops_without_waiting_for_sitemaps_to_be_read() throws Exception {
+        listedSitemap = "/endless.xml";
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {})
+                .withDelayInBetweenRequest(0)
+                .withSitemapSeeding(true)
+                .withMaxPages(3)
+                .build();
+        long started = System.nanoTime();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/index.html");
+
+        // the only worker is not held up by the sitemap, which takes 30 seconds to be served in full
+        assertEquals(3, hrefs.size());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    private Webmuncher newWebmuncher(Map<String, Integer> processed, Path cache) {
+        return Webmuncher.newBuilder()
+                .withFetchAction(page -> processed.put(page.getUrl(), page.getStatus()))
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(2)
+                .withSitemapSeeding(true)
+                .withRecrawlCache(cache)
+                .withProcessUnchangedPages(true)
+                .build();
+    }
+
+    private static void xml(HttpServletResponse response, String content) throws IOException {
+        response.setContentType("application/xml;charset=utf-8");
+        response.getWriter().print(content);
+    }
+
+    /**
+     * A sitemap of urls served slowly, one every 10 milliseconds
+     */
+    private void endless(HttpServletResponse response) throws IOException {
+        response.setContentType("application/xml;charset=utf-8");
+        PrintWriter writer = response.getWriter();
+        writer.print("<urlset xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'>");
+        for (int i = 0; i < 3_000 && serving; i++) {
+            writer.print("<url><loc>" + host + "/page/" + i + ".html</loc></url>");
+            writer.flush();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        writer.print("</urlset>");
+    }
+
+    private static void page(HttpServletResponse response, String links) throws IOException {
+        response.setContentType("text/html;charset=utf-8");
+        response.getWriter().println("<html><head><title>Page</title></head><body>" + links + "</body></html>");
+    }
+}
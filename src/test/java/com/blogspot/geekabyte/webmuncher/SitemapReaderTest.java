@@ -0,0 +1,167 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.SitemapReader}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class SitemapReaderTest {
+
+    private static final String SITEMAP = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"\n"
+            + "        xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">\n"
+            + "  <url><loc> http://example.com/one.html </loc><lastmod>2026-10-01</lastmod></url>\n"
+            + "  <url>\n"
+            + "    <loc>http://example.com/two.html?a=1&amp;b=2</loc>\n"
+            + "    <image:image><image:loc>http://example.com/two.png</image:loc></image:image>\n"
+            + "  </url>\n"
+            + "  <url><lastmod>2026-10-01</lastmod></url>\n"
+            + "</urlset>";
+
+    @Test
+    public void test_urls_are_read() throws Exception {
+        List<String> read = new ArrayList<>();
+
+        // System under test
+        SitemapReader.read(stream(SITEMAP.getBytes(StandardCharsets.UTF_8)), handler(read));
+
+        assertEquals(2, read.size());
+        assertEquals("url http://example.com/one.html 2026-10-01", read.get(0));
+        assertEquals("url http://example.com/two.html?a=1&b=2 null", read.get(1));
+    }
+
+    @Test
+    public void test_gzipped_sitemap_index_is_read() throws Exception {
+        String index = "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<sitemap><loc>http://example.com/one.xml.gz</loc></sitemap>"
+                + "<sitemap><loc>http://example.com/two.xml</loc><lastmod>2026-10-01</lastmod></sitemap>"
+                + "</sitemapindex>";
+        List<String> read = new ArrayList<>();
+
+        // System under test
+        SitemapReader.read(stream(gzip(index)), handler(read));
+
+        assertEquals(2, read.size());
+        assertEquals("sitemap http://example.com/one.xml.gz", read.get(0));
+        assertEquals("sitemap http://example.com/two.xml", read.get(1));
+    }
+
+    @Test
+    public void test_external_entities_are_not_resolved() throws Exception {
+        String sitemap = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE urlset [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>"
+                + "<urlset><url><loc>http://example.com/&secret;</loc></url></urlset>";
+        List<String> read = new ArrayList<>();
+
+        try {
+            // System under test
+            SitemapReader.read(stream(sitemap.getBytes(StandardCharsets.UTF_8)), handler(read));
+        } catch (IOException e) {
+            // rejecting the entity is as good as not resolving it
+        }
+
+        read.forEach(url -> assertFalse(url, url.contains("root")));
+    }
+
+    @Test
+    public void test_large_sitemap_is_streamed() throws Exception {
+        int count = 1_000_000;
+        long[] read = {0};
+
+        // System under test
+        SitemapReader.read(generated(count), new SitemapReader.Handler() {
+            @Override
+            public void url(String loc, String lastmod) {
+                read[0]++;
+            }
+
+            @Override
+            public void sitemap(String loc) {
+                fail("not an index");
+            }
+        });
+
+        assertEquals(count, read[0]);
+    }
+
+    @Test
+    public void test_lastmod_is_parsed() throws Exception {
+        assertEquals(Instant.parse("2026-10-01T00:00:00Z"), SitemapSeeder.parseLastmod("2026-10-01"));
+        assertEquals(Instant.parse("2026-10-01T10:15:30Z"),
+                SitemapSeeder.parseLastmod("2026-10-01T12:15:30+02:00"));
+        assertEquals(Instant.parse("2026-10-01T10:15:00Z"), SitemapSeeder.parseLastmod("2026-10-01T10:15Z"));
+        assertNull(SitemapSeeder.parseLastmod("yesterday"));
+        assertNull(SitemapSeeder.parseLastmod(null));
+    }
+
+    private static SitemapReader.Handler handler(List<String> read) {
+        return new SitemapReader.Handler() {
+            @Override
+            public void url(String loc, String lastmod) {
+                read.add("url " + loc + " " + lastmod);
+            }
+
+            @Override
+            public void sitemap(String loc) {
+                read.add("sitemap " + loc);
+            }
+        };
+    }
+
+    private static InputStream stream(byte[] content) {
+        return new ByteArrayInputStream(content);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A sitemap of the given number of urls, generated as it is read rather than held in memory
+     */
+    private static InputStream generated(int count) {
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            private int next = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next <= count;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String chunk;
+                if (next < 0) {
+                    chunk = "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">";
+                } else if (next == count) {
+                    chunk = "</urlset>";
+                } else {
+                    chunk = "<url><loc>http://example.com/page/" + next + ".html</loc>"
+                            + "<lastmod>2026-10-01</lastmod></url>";
+                }
+                next++;
+                return stream(chunk.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import com.blogspot.geekabyte.webmuncher.dedup.FingerprintSeenUrlStore;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Integration test for a crawl that queues millions of urls, run by its own surefire execution in a jvm with a
+ * 64MB heap, too small for the urls queued to be held in memory
+ *
+ * @author Dadepo Aderemi.
+ */
+public class SmallHeapCrawlIntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String host = "http://localhost:" + SyntheticTestServer.HTTP_PORT;
+    private SyntheticTestServer testServer;
+
+    @Before
+    public void startServer() throws Exception {
+        // every page links to a thousand pages
+        testServer = new SyntheticTestServer(Integer.MAX_VALUE, 1000, 0);
+        testServer.start();
+    }
+
+    @After
+    public void shutDownServer() throws Exception {
+        testServer.shutDown();
+    }
+
+    @Test
+    public void test_millions_of_urls_are_queued_with_a_small_heap() throws Exception {
+        FingerprintSeenUrlStore seen = FingerprintSeenUrlStore.offHeap(4_000_000);
+        AtomicInteger crawled = new AtomicInteger();
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> crawled.incrementAndGet())
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .withStreamingLinkExtraction(true)
+                .withDiskFrontier(folder.getRoot().toPath(), 1000)
+                .withSeenUrlStore(() -> seen)
+                .withCollectCrawledUrls(false)
+                .withMaxPages(2500)
+                .build();
+
+        // System under test
+        webmuncherSUT.crawl(host + "/page/0.html");
+
+        assertEquals(2500, crawled.get());
+        // a url takes well over 32 bytes of heap when queued in memory
+        assertTrue(seen.size() > 2_000_000);
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+}
@@ -0,0 +1,129 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Jetty server used for HTTP integration test. Serves a synthetic site of {@code pages} pages
+ * at /page/{n}.html, where each page n links back to page 0 and to pages 2n+1 and 2n+2, or with a
+ * {@code fanout} other than 2, to pages fanout * n + 1 to fanout * n + fanout. Each
+ * response can be delayed, to simulate a slow server, and a robots.txt asking for a crawl delay can be served.
+ *
+ * @author Dadepo Aderemi.
+ */
+public class SyntheticTestServer {
+
+    public static final int HTTP_PORT = 50036;
+    private static final Pattern PAGE = Pattern.compile("/page/(\\d+)\\.html");
+
+    private final int pages;
+    private final int fanout;
+    private final long responseDelay;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile String crawlDelay;
+
+    private Server server;
+
+    public SyntheticTestServer(int pages, long responseDelay) {
+        this(pages, 2, responseDelay);
+    }
+
+    public SyntheticTestServer(int pages, int fanout, long responseDelay) {
+        this.pages = pages;
+        this.fanout = fanout;
+        this.responseDelay = responseDelay;
+    }
+
+    public void start() throws Exception {
+        server = new Server(HTTP_PORT);
+        server.setHandler(getMockHandler());
+        server.start();
+    }
+
+    public void shutDown() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * Serves a robots.txt asking for the given crawl delay. It is not counted as a request
+     *
+     * @param crawlDelay the crawl delay, in seconds
+     */
+    public void setCrawlDelay(String crawlDelay) {
+        this.crawlDelay = crawlDelay;
+    }
+
+    /**
+     * @return the highest number of requests that were being served at the same time
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * @return the number of requests served
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public Handler getMockHandler() {
+        Handler handler = new AbstractHandler() {
+
+            public void handle(String target, org.eclipse.jetty.server.Request baseRequest,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                if (crawlDelay != null && "/robots.txt".equals(target)) {
+                    baseRequest.setHandled(true);
+                    response.setContentType("text/plain");
+                    response.getWriter().println("User-agent: *\nCrawl-delay: " + crawlDelay);
+                    return;
+                }
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                requests.incrementAndGet();
+                try {
+                    if (responseDelay > 0) {
+                        Thread.sleep(responseDelay);
+                    }
+                    baseRequest.setHandled(true);
+                    Matcher matcher = PAGE.matcher(target);
+                    if (!matcher.matches() || Integer.parseInt(matcher.group(1)) >= pages) {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                        return;
+                    }
+                    response.setContentType("text/html;charset=utf-8");
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.getWriter().println(getContent(Integer.parseInt(matcher.group(1))));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+
+            private String getContent(int page) {
+                StringBuilder content = new StringBuilder("<html><head><title>Page ")
+                        .append(page).append("</title></head><body><a href='/page/0.html'>home</a>");
+                long first = (long) fanout * page + 1;
+                for (long child = first; child < first + fanout && child < pages; child++) {
+                    content.append("<a href='/page/").append(child).append(".html'>").append(child).append("</a>");
+                }
+                return content.append("</body></html>").toString();
+            }
+        };
+        return handler;
+    }
+}
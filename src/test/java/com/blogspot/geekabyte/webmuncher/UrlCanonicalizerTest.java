@@ -0,0 +1,106 @@
+package com.blogspot.geekabyte.webmuncher;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.UrlCanonicalizer} and {@link Scope}
+ *
+ * @author Dadepo Aderemi.
+ */
+public class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer =
+            new UrlCanonicalizer(Webmuncher.DEFAULT_STRIPPED_QUERY_PARAMS, false, false);
+
+    @Test
+    public void test_same_pages_have_same_canonical_form() throws Exception {
+        // System under test
+        Set<String> canonical = canonicalized(canonicalizer,
+                "http://example.com/a/b.html",
+                "HTTP://Example.COM:80/a/b.html",
+                "http://example.com./a/b.html#section",
+                "http://example.com/a/./c/../b.html",
+                "http://example.com/%61/b.html",
+                " http://example.com/a/b.html?utm_source=feed&utm_medium=rss");
+
+        assertEquals(Collections.singleton("http://example.com/a/b.html"), canonical);
+    }
+
+    @Test
+    public void test_urls_are_normalized() throws Exception {
+        assertEquals("http://example.com/", canonicalizer.canonicalize("http://example.com"));
+        assertEquals("https://example.com/", canonicalizer.canonicalize("https://example.com:443?"));
+        assertEquals("https://example.com:8443/a/", canonicalizer.canonicalize("https://example.com:8443/a/b/.."));
+        assertEquals("http://example.com/", canonicalizer.canonicalize("http://example.com/../.."));
+        assertEquals("http://example.com/a%2Fb?q=%C3%A9",
+                canonicalizer.canonicalize("http://example.com/a%2fb?q=%c3%a9"));
+        assertEquals("http://example.com/dir/", canonicalizer.canonicalize("http://example.com/dir/?C=N;O=D"));
+        assertEquals("http://example.com/.well-known/a",
+                canonicalizer.canonicalize("http://example.com/.well-known/a"));
+        assertEquals("http://user@[::1]:8080/", canonicalizer.canonicalize("http://user@[::1]:8080"));
+        assertEquals("http://example.com/a?b=2&a=1", canonicalizer.canonicalize("http://example.com/a?b=2&&a=1"));
+    }
+
+    @Test
+    public void test_urls_not_crawled_have_no_canonical_form() throws Exception {
+        assertNull(canonicalizer.canonicalize("mailto:someone@example.com"));
+        assertNull(canonicalizer.canonicalize("javascript:void(0)"));
+        assertNull(canonicalizer.canonicalize("ftp://example.com/file"));
+        assertNull(canonicalizer.canonicalize(""));
+        assertNull(canonicalizer.canonicalize("http://example.com:port/"));
+        assertNull(canonicalizer.canonicalize("http:///path"));
+    }
+
+    @Test
+    public void test_query_params_are_sorted_and_trailing_slash_dropped_when_asked() throws Exception {
+        UrlCanonicalizer canonicalizerSUT = new UrlCanonicalizer(new HashSet<>(Arrays.asList("sid")), true, true);
+
+        // System under test
+        Set<String> canonical = canonicalized(canonicalizerSUT,
+                "http://example.com/a?x=1&y=2",
+                "http://example.com/a/?y=2&x=1",
+                "http://example.com/a?y=2&sid=42&x=1#top");
+
+        assertEquals(Collections.singleton("http://example.com/a?x=1&y=2"), canonical);
+        assertEquals("http://example.com/", canonicalizerSUT.canonicalize("http://example.com/"));
+    }
+
+    @Test
+    public void test_host_is_parsed_from_canonical_url() throws Exception {
+        assertEquals("example.com", UrlCanonicalizer.host("http://example.com/"));
+        assertEquals("example.com", UrlCanonicalizer.host("http://example.com:8080/a?b=http://other.org"));
+        assertEquals("evil.org", UrlCanonicalizer.host("http://example.com@evil.org/"));
+        assertEquals("[::1]", UrlCanonicalizer.host("http://[::1]:8080/"));
+    }
+
+    @Test
+    public void test_scope_matches_on_host() throws Exception {
+        assertTrue(Scope.HOST.matches("example.com", "example.com"));
+        assertFalse(Scope.HOST.matches("www.example.com", "example.com"));
+
+        assertTrue(Scope.SUBDOMAINS.matches("blog.example.com", "example.com"));
+        assertFalse(Scope.SUBDOMAINS.matches("example.com.evil.org", "example.com"));
+        assertFalse(Scope.SUBDOMAINS.matches("notexample.com", "example.com"));
+        assertFalse(Scope.SUBDOMAINS.matches("example.com", "www.example.com"));
+
+        assertTrue(Scope.DOMAIN.matches("example.com", "www.example.com"));
+        assertTrue(Scope.DOMAIN.matches("blog.example.co.uk", "www.example.co.uk"));
+        assertFalse(Scope.DOMAIN.matches("other.co.uk", "www.example.co.uk"));
+        assertFalse(Scope.DOMAIN.matches("127.0.0.2", "127.0.0.1"));
+    }
+
+    private static Set<String> canonicalized(UrlCanonicalizer canonicalizer, String... urls) {
+        Set<String> canonical = new HashSet<>();
+        for (String url : urls) {
+            canonical.add(canonicalizer.canonicalize(url));
+        }
+        return canonical;
+    }
+}
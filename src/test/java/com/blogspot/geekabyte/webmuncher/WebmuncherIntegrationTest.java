@@ -7,11 +7,14 @@ import org.junit.runner.*;
 import org.mockito.*;
 import org.mockito.runners.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -68,6 +71,55 @@ public class WebmuncherIntegrationTest {
         verify(mockAction, times(6)).process(any(FetchedPage.class));
     }
 
+    @Test
+    public void test_extractAllFromUrl_with_streaming_link_extraction() throws Exception {
+        List<String> titles = Collections.synchronizedList(new ArrayList<>());
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> titles.add(page.getTitle()))
+                .withDelayInBetweenRequest(0)
+                .withStreamingLinkExtraction(true)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/mocksite/index.html");
+
+        assertEquals(6, hrefs.size());
+        // parsed once asked for
+        assertTrue(titles.contains("Index page"));
+    }
+
+    @Test
+    public void test_extractAllFromUrl_with_parse_and_sink_threads() throws Exception {
+        AtomicInteger inAction = new AtomicInteger();
+        AtomicInteger maxInAction = new AtomicInteger();
+        List<String> titles = Collections.synchronizedList(new ArrayList<>());
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(page -> {
+                    maxInAction.accumulateAndGet(inAction.incrementAndGet(), Math::max);
+                    titles.add(page.getTitle());
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inAction.decrementAndGet();
+                })
+                .withDelayInBetweenRequest(0)
+                .withConcurrency(4)
+                .withParseThreads(2)
+                .withSinkThreads(1)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/mocksite/index.html");
+
+        assertEquals(6, hrefs.size());
+        assertEquals(6, titles.size());
+        assertTrue(titles.contains("Index page"));
+        // the action is sized on its own, apart from the fetches
+        assertEquals(1, maxInAction.get());
+    }
+
     @Test
     public void test_extractAllFromUrl_exclude_url() throws Exception {
         FetchAction mockAction = mock(FetchAction.class);
@@ -158,6 +210,65 @@ public class WebmuncherIntegrationTest {
         assertEquals(notFoundCount, 3);
     }
 
+    @Test
+    public void test_skipped_extensions_are_not_fetched() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = new Webmuncher(mockAction);
+
+        webmuncherSUT.setDelay(0);
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/mocksiteassets/index.html");
+
+        ArgumentCaptor<FetchedPage> captor = ArgumentCaptor.forClass(FetchedPage.class);
+        assertEquals(5, hrefs.size());
+        verify(mockAction, times(5)).process(captor.capture());
+        int skippedCount = 0;
+        for (FetchedPage page : captor.getAllValues()) {
+            if (page.getStatus() == 415) {
+                skippedCount++;
+            }
+        }
+        // the files are missing from the server, so would be 404 had they been fetched
+        assertEquals(3, skippedCount);
+    }
+
+    @Test
+    public void test_skipped_extensions_can_be_changed() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(mockAction)
+                .withDelayInBetweenRequest(0)
+                .withSkippedExtensions(new HashSet<>(Arrays.asList("PDF")))
+                .build();
+
+        assertTrue(webmuncherSUT.hasSkippedExtension(host + "/report.pdf?version=2"));
+        assertFalse(webmuncherSUT.hasSkippedExtension(host + "/photo.jpg"));
+        assertFalse(webmuncherSUT.hasSkippedExtension("http://reports.pdf/"));
+        assertFalse(webmuncherSUT.hasSkippedExtension("http://reports.pdf"));
+        assertFalse(webmuncherSUT.hasSkippedExtension(host + "/v1.pdf/index.html"));
+    }
+
+    @Test
+    public void test_large_page_is_truncated() throws Exception {
+        FetchAction mockAction = mock(FetchAction.class);
+        Webmuncher webmuncherSUT = Webmuncher.newBuilder()
+                .withFetchAction(mockAction)
+                .withDelayInBetweenRequest(0)
+                .withMaxPageSize(64)
+                .withTruncateLargePages(true)
+                .build();
+
+        // System under test
+        Set<String> hrefs = webmuncherSUT.crawl(host + "/mocksite/index.html");
+
+        ArgumentCaptor<FetchedPage> captor = ArgumentCaptor.forClass(FetchedPage.class);
+        verify(mockAction).process(captor.capture());
+        assertTrue(captor.getValue().isTruncated());
+        assertEquals(200, captor.getValue().getStatus());
+        // the links are past the first 64 bytes
+        assertEquals(1, hrefs.size());
+    }
+
     @Test
     public void test_pattern_exclude_all_using_hashset_api() throws Exception {
         /**
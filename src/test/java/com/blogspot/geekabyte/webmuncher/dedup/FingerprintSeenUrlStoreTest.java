@@ -0,0 +1,57 @@
+package com.blogspot.geekabyte.webmuncher.dedup;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link com.blogspot.geekabyte.webmuncher.dedup.FingerprintSeenUrlStore} at its capacity limit, which is
+ * lowered so the table does not take gigabytes
+ *
+ * @author Dadepo Aderemi.
+ */
+public class FingerprintSeenUrlStoreTest {
+
+    private static final int MAX_CAPACITY = 1 << 10;
+
+    @Test
+    public void test_table_fills_up_at_its_capacity_limit() {
+        assertFullAtLimit(new FingerprintSeenUrlStore(16, false, MAX_CAPACITY));
+    }
+
+    @Test
+    public void test_off_heap_table_fills_up_at_its_capacity_limit() {
+        assertFullAtLimit(new FingerprintSeenUrlStore(16, true, MAX_CAPACITY));
+    }
+
+    @Test
+    public void test_table_is_not_sized_beyond_its_capacity_limit() {
+        // System under test
+        FingerprintSeenUrlStore store = new FingerprintSeenUrlStore(Integer.MAX_VALUE, true, MAX_CAPACITY);
+
+        assertEquals(MAX_CAPACITY * 8L, store.footprint());
+    }
+
+    private static void assertFullAtLimit(FingerprintSeenUrlStore store) {
+        // past half full, the table no longer grows
+        for (int i = 0; i < MAX_CAPACITY - 1; i++) {
+            // System under test
+            assertTrue(store.add(url(i)));
+        }
+        assertEquals(MAX_CAPACITY * 8L, store.footprint());
+        assertEquals(MAX_CAPACITY - 1, store.size());
+        assertFalse(store.add(url(0)));
+        assertTrue(store.contains(url(MAX_CAPACITY - 2)));
+
+        try {
+            store.add(url(MAX_CAPACITY));
+            fail("the store should be full");
+        } catch (IllegalStateException e) {
+            assertEquals(MAX_CAPACITY - 1, store.size());
+        }
+    }
+
+    private static String url(int number) {
+        return "http://localhost/page/" + number + ".html";
+    }
+}